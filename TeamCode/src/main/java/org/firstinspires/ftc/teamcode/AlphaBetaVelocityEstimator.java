@@ -0,0 +1,41 @@
+package org.firstinspires.ftc.teamcode;
+
+/**
+ * Alpha-beta filter over encoder positions: predicts with the current velocity and corrects
+ * position and velocity by fixed fractions of the residual. beta = alpha^2 / (2 - alpha) is
+ * critically damped; smaller values smooth more and lag more.
+ */
+public final class AlphaBetaVelocityEstimator implements VelocityEstimator {
+    private final double alpha, beta;
+
+    private boolean initialized;
+    private long lastTime;
+    private double position, velocity;
+
+    public AlphaBetaVelocityEstimator(double alpha, double beta) {
+        this.alpha = alpha;
+        this.beta = beta;
+    }
+
+    @Override
+    public double update(long timeNanos, double measured) {
+        if (!initialized) {
+            initialized = true;
+            lastTime = timeNanos;
+            position = measured;
+            return 0;
+        }
+
+        double dt = (timeNanos - lastTime) / 1e9;
+        if (dt <= 0) {
+            return velocity;
+        }
+        lastTime = timeNanos;
+
+        double predicted = position + velocity * dt;
+        double residual = measured - predicted;
+        position = predicted + alpha * residual;
+        velocity += beta / dt * residual;
+        return velocity;
+    }
+}
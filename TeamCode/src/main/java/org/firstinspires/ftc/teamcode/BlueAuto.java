@@ -3,7 +3,6 @@ package org.firstinspires.ftc.teamcode;
 import com.acmerobotics.roadrunner.Action;
 import com.acmerobotics.roadrunner.Pose2d;
 import com.acmerobotics.roadrunner.SequentialAction;
-import com.acmerobotics.roadrunner.ftc.Actions;
 import com.qualcomm.robotcore.eventloop.opmode.Autonomous;
 import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
 @Autonomous
@@ -13,15 +12,22 @@ public class BlueAuto extends LinearOpMode {
     public void runOpMode(){
         Pose2d initialPose = new Pose2d(0, 63, Math.toRadians(90));
         MecanumDrive drive = new MecanumDrive(hardwareMap, initialPose );
-        Action moveOutOfStart = (drive.actionBuilder(initialPose))
+        // built once, then loaded from the trajectory cache on later inits
+        Action moveOutOfStart = drive.cachedActionBuilder(initialPose)
                 .lineToX(70)
                 .build();
-        waitForStart();
-        if (isStopRequested()) return;
-        Actions.runBlocking(
-                new SequentialAction(
-                        moveOutOfStart
-                )
-        );
+        try {
+            waitForStart();
+            if (isStopRequested()) return;
+            LoopProfiler profiler = new LoopProfiler(1);
+            int autoStage = profiler.addStage("auto");
+            drive.renderer.runBlocking(
+                    profiler.timed(autoStage, drive.chain(new SequentialAction(
+                            moveOutOfStart
+                    )))
+            );
+        } finally {
+            drive.close();
+        }
     }
 }
@@ -0,0 +1,129 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.hardware.lynx.LynxModule;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+
+import java.util.List;
+
+/**
+ * Owns the bulk cache of every Lynx module. Once something {@link #claim(Object)}s the bulk
+ * read, the hubs are put in MANUAL mode and refreshed exactly once per loop cycle by the
+ * owner's {@link #beginCycle(Object)}, so every encoder read within the cycle (localizer,
+ * tuning, telemetry) shares the same bulk read.
+ * <p>
+ * Several places can drive a cycle (a teleop loop, the odometry thread), so only one of them
+ * does: whoever claims the bulk read first. In MANUAL mode encoder values only change when
+ * the owner calls beginCycle(), so the hubs stay in AUTO while nobody owns the bulk read
+ * (before the first claim and after {@link #release(Object)}); a mechanism action polling an
+ * encoder under {@code Actions.runBlocking} then still sees fresh values, and beginCycle()
+ * does nothing.
+ */
+public final class BulkReadManager {
+    private final List<LynxModule> modules;
+
+    private Object owner;
+    private long ignoredCalls;
+
+    private long cycles, bulkReads;
+    private long lastCycleReads;
+    private long lastLatencyNanos, maxLatencyNanos, totalLatencyNanos;
+
+    public BulkReadManager(HardwareMap hardwareMap) {
+        modules = hardwareMap.getAll(LynxModule.class);
+        setMode(LynxModule.BulkCachingMode.AUTO);
+    }
+
+    /**
+     * Makes owner the only caller whose {@link #beginCycle(Object)} reads the hubs and switches
+     * them to MANUAL; owner must then call beginCycle() every cycle until it releases. The claim
+     * sticks until released, so a background reader claimed in the drive's constructor outranks
+     * the OpMode loop.
+     *
+     * @return whether owner now owns the bulk read
+     */
+    public synchronized boolean claim(Object owner) {
+        if (this.owner == null) {
+            this.owner = owner;
+            setMode(LynxModule.BulkCachingMode.MANUAL);
+        }
+        return this.owner == owner;
+    }
+
+    /**
+     * Gives up owner's claim, if it holds it, and returns the hubs to AUTO, for an owner that
+     * stops calling beginCycle().
+     */
+    public synchronized void release(Object owner) {
+        if (this.owner == owner) {
+            this.owner = null;
+            setMode(LynxModule.BulkCachingMode.AUTO);
+        }
+    }
+
+    /**
+     * Starts a new loop cycle: drops the previous cycle's cache and performs one fresh bulk read
+     * per hub. Does nothing unless caller owns the bulk read (with no owner the hubs are in AUTO
+     * and refresh themselves), so it is safe to call from every context that may be the one
+     * driving the loop.
+     */
+    public synchronized void beginCycle(Object caller) {
+        if (owner != caller) {
+            if (owner != null) {
+                ignoredCalls++;
+            }
+            return;
+        }
+
+        long start = System.nanoTime();
+        for (LynxModule module : modules) {
+            module.clearBulkCache();
+            // getBulkData() issues the read and refills the cache in MANUAL mode
+            module.getBulkData();
+        }
+        long latency = System.nanoTime() - start;
+
+        cycles++;
+        bulkReads += modules.size();
+        lastCycleReads = modules.size();
+        lastLatencyNanos = latency;
+        maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+        totalLatencyNanos += latency;
+    }
+
+    private void setMode(LynxModule.BulkCachingMode mode) {
+        for (LynxModule module : modules) {
+            module.setBulkCachingMode(mode);
+        }
+    }
+
+    /**
+     * Returns how many beginCycle calls were dropped because the caller wasn't the owner.
+     */
+    public synchronized long getIgnoredCalls() {
+        return ignoredCalls;
+    }
+
+    public synchronized long getCycles() {
+        return cycles;
+    }
+
+    public synchronized long getLastCycleReads() {
+        return lastCycleReads;
+    }
+
+    public synchronized double getReadsPerCycle() {
+        return cycles == 0 ? 0 : (double) bulkReads / cycles;
+    }
+
+    public synchronized double getLastLatencyMs() {
+        return lastLatencyNanos / 1e6;
+    }
+
+    public synchronized double getMaxLatencyMs() {
+        return maxLatencyNanos / 1e6;
+    }
+
+    public synchronized double getMeanLatencyMs() {
+        return cycles == 0 ? 0 : totalLatencyNanos / 1e6 / cycles;
+    }
+}
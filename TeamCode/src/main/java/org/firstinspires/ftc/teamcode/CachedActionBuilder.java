@@ -0,0 +1,197 @@
+package org.firstinspires.ftc.teamcode;
+
+import androidx.annotation.NonNull;
+
+import com.acmerobotics.dashboard.telemetry.TelemetryPacket;
+import com.acmerobotics.roadrunner.Action;
+import com.acmerobotics.roadrunner.NullAction;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.SequentialAction;
+import com.acmerobotics.roadrunner.TrajectoryActionBuilder;
+import com.acmerobotics.roadrunner.Vector2d;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Records the motion calls of a TrajectoryActionBuilder and builds them through
+ * TrajectoryCache: on a hit the stored samples are followed without building anything,
+ * on a miss the real builder runs once and its trajectories and turns are sampled and saved.
+ * <p>
+ * Only motion is recorded; put waits, markers and mechanism actions around the result in a
+ * SequentialAction or ParallelAction. Either way the drive follows the samples, so a cached
+ * and an uncached run behave the same. That holds even when useSampleTables is off: the
+ * result is always a chain of FollowSamplesActions, never FollowTrajectoryAction/TurnAction.
+ */
+public final class CachedActionBuilder {
+    private final MecanumDrive drive;
+    private final Pose2d beginPose;
+    private final double beginEndVel;
+
+    private final StringBuilder calls = new StringBuilder();
+    private final List<UnaryOperator<TrajectoryActionBuilder>> ops = new ArrayList<>();
+
+    CachedActionBuilder(MecanumDrive drive, Pose2d beginPose, double beginEndVel) {
+        this.drive = drive;
+        this.beginPose = beginPose;
+        this.beginEndVel = beginEndVel;
+        calls.append("begin").append(pose(beginPose)).append("beginEndVel").append(beginEndVel);
+    }
+
+    private CachedActionBuilder op(String call, UnaryOperator<TrajectoryActionBuilder> op) {
+        calls.append('\n').append(call);
+        ops.add(op);
+        return this;
+    }
+
+    private static String pose(Pose2d p) {
+        return "(" + p.position.x + "," + p.position.y + "," + p.heading.toDouble() + ")";
+    }
+
+    private static String vec(Vector2d v) {
+        return "(" + v.x + "," + v.y + ")";
+    }
+
+    public CachedActionBuilder setTangent(double r) {
+        return op("setTangent" + r, b -> b.setTangent(r));
+    }
+
+    public CachedActionBuilder setReversed(boolean reversed) {
+        return op("setReversed" + reversed, b -> b.setReversed(reversed));
+    }
+
+    public CachedActionBuilder turn(double angle) {
+        return op("turn" + angle, b -> b.turn(angle));
+    }
+
+    public CachedActionBuilder turnTo(double heading) {
+        return op("turnTo" + heading, b -> b.turnTo(heading));
+    }
+
+    public CachedActionBuilder lineToX(double x) {
+        return op("lineToX" + x, b -> b.lineToX(x));
+    }
+
+    public CachedActionBuilder lineToXConstantHeading(double x) {
+        return op("lineToXConstantHeading" + x, b -> b.lineToXConstantHeading(x));
+    }
+
+    public CachedActionBuilder lineToXLinearHeading(double x, double heading) {
+        return op("lineToXLinearHeading" + x + "," + heading, b -> b.lineToXLinearHeading(x, heading));
+    }
+
+    public CachedActionBuilder lineToXSplineHeading(double x, double heading) {
+        return op("lineToXSplineHeading" + x + "," + heading, b -> b.lineToXSplineHeading(x, heading));
+    }
+
+    public CachedActionBuilder lineToY(double y) {
+        return op("lineToY" + y, b -> b.lineToY(y));
+    }
+
+    public CachedActionBuilder lineToYConstantHeading(double y) {
+        return op("lineToYConstantHeading" + y, b -> b.lineToYConstantHeading(y));
+    }
+
+    public CachedActionBuilder lineToYLinearHeading(double y, double heading) {
+        return op("lineToYLinearHeading" + y + "," + heading, b -> b.lineToYLinearHeading(y, heading));
+    }
+
+    public CachedActionBuilder lineToYSplineHeading(double y, double heading) {
+        return op("lineToYSplineHeading" + y + "," + heading, b -> b.lineToYSplineHeading(y, heading));
+    }
+
+    public CachedActionBuilder strafeTo(Vector2d pos) {
+        return op("strafeTo" + vec(pos), b -> b.strafeTo(pos));
+    }
+
+    public CachedActionBuilder strafeToConstantHeading(Vector2d pos) {
+        return op("strafeToConstantHeading" + vec(pos), b -> b.strafeToConstantHeading(pos));
+    }
+
+    public CachedActionBuilder strafeToLinearHeading(Vector2d pos, double heading) {
+        return op("strafeToLinearHeading" + vec(pos) + heading, b -> b.strafeToLinearHeading(pos, heading));
+    }
+
+    public CachedActionBuilder strafeToSplineHeading(Vector2d pos, double heading) {
+        return op("strafeToSplineHeading" + vec(pos) + heading, b -> b.strafeToSplineHeading(pos, heading));
+    }
+
+    public CachedActionBuilder splineTo(Vector2d pos, double tangent) {
+        return op("splineTo" + vec(pos) + tangent, b -> b.splineTo(pos, tangent));
+    }
+
+    public CachedActionBuilder splineToConstantHeading(Vector2d pos, double tangent) {
+        return op("splineToConstantHeading" + vec(pos) + tangent, b -> b.splineToConstantHeading(pos, tangent));
+    }
+
+    public CachedActionBuilder splineToLinearHeading(Pose2d pose, double tangent) {
+        return op("splineToLinearHeading" + pose(pose) + tangent, b -> b.splineToLinearHeading(pose, tangent));
+    }
+
+    public CachedActionBuilder splineToSplineHeading(Pose2d pose, double tangent) {
+        return op("splineToSplineHeading" + pose(pose) + tangent, b -> b.splineToSplineHeading(pose, tangent));
+    }
+
+    public Action build() {
+        // the battery-dependent constraint scale is part of the key, so a different scale
+        // misses; it is quantized, so nearby voltages share an entry
+        double scale = drive.getConstraintScale();
+        String key = TrajectoryCache.key(calls + "\nconstraintScale" + scale);
+        List<TrajectorySamples> segments = TrajectoryCache.load(key);
+        if (segments == null) {
+            segments = sample(scale);
+            TrajectoryCache.save(key, segments);
+        }
+
+        List<Action> actions = new ArrayList<>(segments.size());
+        for (TrajectorySamples s : segments) {
+            actions.add(drive.new FollowSamplesAction(s));
+        }
+        return new SequentialAction(actions);
+    }
+
+    /**
+     * Stands in for a drive action while sampling; the built action tree is then walked in
+     * execution order, since TrajectoryActionBuilder calls its factories back to front.
+     */
+    private static final class SampledSegment implements Action {
+        final TrajectorySamples samples;
+
+        SampledSegment(TrajectorySamples samples) {
+            this.samples = samples;
+        }
+
+        @Override
+        public boolean run(@NonNull TelemetryPacket p) {
+            throw new IllegalStateException("sampling placeholder, never run");
+        }
+    }
+
+    private List<TrajectorySamples> sample(double scale) {
+        final double dt = MecanumDrive.PARAMS.sampleDt;
+        TrajectoryActionBuilder b = drive.actionBuilder(beginPose, beginEndVel, scale,
+                turn -> new SampledSegment(TrajectorySamples.of(turn, dt)),
+                trajectory -> new SampledSegment(TrajectorySamples.of(trajectory, dt)));
+        for (UnaryOperator<TrajectoryActionBuilder> op : ops) {
+            b = op.apply(b);
+        }
+
+        List<TrajectorySamples> segments = new ArrayList<>();
+        collect(b.build(), segments);
+        return segments;
+    }
+
+    private static void collect(Action action, List<TrajectorySamples> segments) {
+        if (action instanceof SampledSegment) {
+            segments.add(((SampledSegment) action).samples);
+        } else if (action instanceof SequentialAction) {
+            for (Action a : ((SequentialAction) action).getInitialActions()) {
+                collect(a, segments);
+            }
+        } else if (!(action instanceof NullAction)) {
+            // only motion is recorded, so nothing else should come out of the builder
+            throw new IllegalStateException("unexpected action in a motion-only build: " + action);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.DcMotorSimple;
+
+/**
+ * Wraps a motor and drops power writes that fall within epsilon of the last commanded power.
+ * Every dropped write is one less Lynx transaction in the loop.
+ */
+public final class CachingMotor {
+    private final DcMotorSimple motor;
+    private final double epsilon;
+
+    private double lastPower = Double.NaN;
+    private boolean bypassed;
+    private long skippedWrites;
+
+    public CachingMotor(DcMotorSimple motor, double epsilon) {
+        this.motor = motor;
+        this.epsilon = epsilon;
+    }
+
+    public void setPower(double power) {
+        // always let an exact stop through so a tiny residual power can't keep the motor creeping
+        boolean stopping = power == 0 && lastPower != 0;
+        if (!bypassed && !stopping && Math.abs(power - lastPower) <= epsilon) {
+            skippedWrites++;
+            return;
+        }
+
+        motor.setPower(power);
+        lastPower = power;
+    }
+
+    /**
+     * Returns the last power actually written to the motor (not a hardware read).
+     */
+    public double getPower() {
+        return Double.isNaN(lastPower) ? 0 : lastPower;
+    }
+
+    /**
+     * Forgets the cached power so the next write always reaches the hardware.
+     */
+    public void invalidate() {
+        lastPower = Double.NaN;
+    }
+
+    /**
+     * Turns the cache off for good, for when something else also writes the raw motor and the
+     * cached power can no longer be trusted.
+     */
+    public void bypass() {
+        bypassed = true;
+        lastPower = Double.NaN;
+    }
+
+    public long getSkippedWrites() {
+        return skippedWrites;
+    }
+}
@@ -0,0 +1,48 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.Servo;
+
+/**
+ * Wraps a servo and drops position writes that fall within epsilon of the last commanded position.
+ */
+public final class CachingServo {
+    private final Servo servo;
+    private final double epsilon;
+
+    private double lastPosition = Double.NaN;
+    private long skippedWrites;
+
+    public CachingServo(Servo servo, double epsilon) {
+        this.servo = servo;
+        this.epsilon = epsilon;
+    }
+
+    public void setPosition(double position) {
+        if (Math.abs(position - lastPosition) <= epsilon) {
+            skippedWrites++;
+            return;
+        }
+
+        servo.setPosition(position);
+        lastPosition = position;
+    }
+
+    /**
+     * Returns the last position actually written to the servo; before the first write (or after
+     * invalidate()) it asks the servo, like an unwrapped one would.
+     */
+    public double getPosition() {
+        return Double.isNaN(lastPosition) ? servo.getPosition() : lastPosition;
+    }
+
+    /**
+     * Forgets the cached position so the next write always reaches the hardware.
+     */
+    public void invalidate() {
+        lastPosition = Double.NaN;
+    }
+
+    public long getSkippedWrites() {
+        return skippedWrites;
+    }
+}
@@ -0,0 +1,70 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.qualcomm.robotcore.hardware.ColorSensor;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Polls a color sensor on its own thread so the drive loop never blocks on I2C.
+ * Each poll publishes an immutable {@link Sample}; the sequence number tells a consumer
+ * whether it has already seen a sample.
+ */
+@Config
+public final class ColorSensorPoller extends PeriodicWorker {
+    public static class Params {
+        // match the sensor's integration time; polling faster only returns repeats
+        public double pollPeriodMs = 50;
+        public double idleTimeoutMs = 2000;
+    }
+
+    public static Params PARAMS = new Params();
+
+    public static final class Sample {
+        public final int red, green, blue;
+        public final long timestampNanos;
+        public final long sequence;
+
+        public Sample(int red, int green, int blue, long timestampNanos, long sequence) {
+            this.red = red;
+            this.green = green;
+            this.blue = blue;
+            this.timestampNanos = timestampNanos;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Returns true if this sample is older than two poll periods, i.e. the poller is behind or stopped.
+         */
+        public boolean isStale() {
+            return System.nanoTime() - timestampNanos > 2 * msToNanos(PARAMS.pollPeriodMs);
+        }
+    }
+
+    public final ColorSensor sensor;
+
+    private final AtomicReference<Sample> latest =
+            new AtomicReference<>(new Sample(0, 0, 0, 0, 0));
+
+    public ColorSensorPoller(ColorSensor sensor) {
+        super("ColorSensorPoller", msToNanos(PARAMS.pollPeriodMs), msToNanos(PARAMS.idleTimeoutMs));
+        this.sensor = sensor;
+    }
+
+    /**
+     * Returns the most recent sample. A sample with sequence 0 means nothing has been read yet.
+     */
+    public Sample getLatest() {
+        touch();
+        return latest.get();
+    }
+
+    @Override
+    protected void tick() {
+        int red = sensor.red();
+        int green = sensor.green();
+        int blue = sensor.blue();
+
+        latest.set(new Sample(red, green, blue, System.nanoTime(), latest.get().sequence + 1));
+    }
+}
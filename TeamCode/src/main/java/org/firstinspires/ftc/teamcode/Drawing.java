@@ -2,21 +2,23 @@ package org.firstinspires.ftc.teamcode;
 
 import com.acmerobotics.dashboard.canvas.Canvas;
 import com.acmerobotics.roadrunner.Pose2d;
-import com.acmerobotics.roadrunner.Vector2d;
 
 public final class Drawing {
     private Drawing() {}
 
 
     public static void drawRobot(Canvas c, Pose2d t) {
+        drawRobot(c, t.position.x, t.position.y, t.heading.toDouble());
+    }
+
+    public static void drawRobot(Canvas c, double x, double y, double heading) {
         final double ROBOT_RADIUS = 9;
 
         c.setStrokeWidth(1);
-        c.strokeCircle(t.position.x, t.position.y, ROBOT_RADIUS);
+        c.strokeCircle(x, y, ROBOT_RADIUS);
 
-        Vector2d halfv = t.heading.vec().times(0.5 * ROBOT_RADIUS);
-        Vector2d p1 = t.position.plus(halfv);
-        Vector2d p2 = p1.plus(halfv);
-        c.strokeLine(p1.x, p1.y, p2.x, p2.y);
+        double halfX = Math.cos(heading) * 0.5 * ROBOT_RADIUS;
+        double halfY = Math.sin(heading) * 0.5 * ROBOT_RADIUS;
+        c.strokeLine(x + halfX, y + halfY, x + 2 * halfX, y + 2 * halfY);
     }
 }
@@ -8,13 +8,38 @@ public class DriveCode extends DriveCodeCommon {
     @Override
     public void runOpMode() {
         MecanumDrive drive = new MecanumDrive(hardwareMap, new Pose2d(0, 0, 0));
+
+        LoopProfiler profiler = new LoopProfiler(10);
+        setupTelemetry();
+        aggregator.addSource(profiler::report);
+
+        planner = new TrajectoryPlanner(drive);
+
+        LoopScheduler scheduler = new LoopScheduler(profiler);
+        // the loop owns the bulk read, unless the odometry thread claimed it first
+        drive.bulkReads.claim(scheduler);
+        scheduler.add("bulkRead", 0, LoopScheduler.PRIORITY_CRITICAL, () -> drive.bulkReads.beginCycle(scheduler));
+        scheduler.add("drives", 0, LoopScheduler.PRIORITY_CRITICAL, () -> drives(drive));
+        // a running auto-drive action updates the pose itself
+        scheduler.add("updatePoseEstimate", 0, LoopScheduler.PRIORITY_CRITICAL, () -> {
+            if (!followingAutoDrive()) {
+                drive.updatePoseEstimate();
+            }
+        });
+        scheduler.add("intake", 0, LoopScheduler.PRIORITY_HIGH, () -> intake(drive));
+        scheduler.add("shooter", 0, LoopScheduler.PRIORITY_HIGH, () -> shooter(drive));
+        scheduler.add("holder", 20, LoopScheduler.PRIORITY_NORMAL, () -> holder(drive));
+        scheduler.add("telemetry", TelemetryAggregator.PARAMS.flushPeriodMs, LoopScheduler.PRIORITY_LOW, aggregator::flush);
+
         waitForStart();
 
-        while (opModeIsActive()) {
-            drives(drive);
-            intake(drive);
-            holder(drive);
-            shooter(drive);
+        try {
+            while (opModeIsActive()) {
+                scheduler.runCycle();
+            }
+        } finally {
+            planner.close();
+            drive.close();
         }
     }
-}
\ No newline at end of file
+}
@@ -1,13 +1,42 @@
 package org.firstinspires.ftc.teamcode;
 
+import com.acmerobotics.dashboard.FtcDashboard;
+import com.acmerobotics.dashboard.canvas.Canvas;
 import com.acmerobotics.dashboard.config.Config;
+import com.acmerobotics.dashboard.telemetry.TelemetryPacket;
+import com.acmerobotics.roadrunner.Action;
+import com.acmerobotics.roadrunner.Pose2d;
 import com.acmerobotics.roadrunner.PoseVelocity2d;
 import com.acmerobotics.roadrunner.Vector2d;
 import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
 import com.qualcomm.robotcore.hardware.DcMotor;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
 @Config
 public class DriveCodeCommon extends LinearOpMode {
+    public static class Params {
+        // launch spot in the blue big launch zone, from the field drawing: field frame with the
+        // origin at the center and the goals on the y = +72 wall, blue goal in the -x corner;
+        // on the diagonal toward the blue goal and facing it. Only valid when the OpMode starts
+        // from a field pose; otherwise park on the spot and press gamepad1 back to take it from
+        // the localizer (it is shown on telemetry to copy in here)
+        public double launchZoneX = -12;
+        public double launchZoneY = 12;
+        public double launchZoneHeadingDeg = 135;
+
+        // a finished plan is rebuilt from the current pose if the robot moved this far from
+        // where it was planned (inches and degrees)
+        public double replanDistance = 2;
+        public double replanHeadingDeg = 5;
+
+        // any stick past this cancels auto-drive
+        public double cancelDeadband = 0.1;
+    }
+
+    public static Params PARAMS = new Params();
 
     double paddlewaiting = 1.0;
     double padllecatch = 0.5;
@@ -23,11 +52,43 @@ public class DriveCodeCommon extends LinearOpMode {
 
     double speed = 1.0;
 
+    long lastColorSequence = 0;
+    boolean detectPurple = false;
+    boolean detectGreen = false;
+
+    // auto-drive to the launch zone (gamepad1 y): planned in the background, then followed
+    TrajectoryPlanner planner;
+    Future<Action> autoDrivePlan;
+    Pose2d autoDriveStart;
+    Action autoDrive;
+    Canvas autoDrivePreview; // the path, drawn once per plan and sent on render frames
+    boolean lastAutoDriveButton;
+
+    TelemetryAggregator aggregator;
+    int redSlot, greenSlot, blueSlot, staleSlot, skippedWritesSlot, bulkReadsSlot, bulkLatencySlot;
+    int launchXSlot, launchYSlot, launchHeadingSlot;
+
     @Override
     public void runOpMode() throws InterruptedException {
     }
 
+    public void setupTelemetry(){
+        aggregator = new TelemetryAggregator(telemetry, 16);
+        redSlot = aggregator.register("red");
+        greenSlot = aggregator.register("green");
+        blueSlot = aggregator.register("blue");
+        staleSlot = aggregator.register("color stale");
+        skippedWritesSlot = aggregator.register("skipped writes");
+        bulkReadsSlot = aggregator.register("bulk reads/cycle");
+        bulkLatencySlot = aggregator.register("bulk read (ms)");
+        launchXSlot = aggregator.register("launch zone x");
+        launchYSlot = aggregator.register("launch zone y");
+        launchHeadingSlot = aggregator.register("launch zone heading (deg)");
+    }
     public void drives(MecanumDrive drive){
+        if (autoDrive(drive)) {
+            return;
+        }
         if (gamepad1.right_bumper) {
             speed = 0.5;
         } else {
@@ -41,6 +102,106 @@ public class DriveCodeCommon extends LinearOpMode {
                 gamepad1.left_stick_x*speed
         ));
     }
+    /**
+     * Runs the launch-zone auto-drive; returns true while it owns the drivetrain. The plan
+     * builds on the planner's thread, and manual driving carries on until it is ready; if the
+     * robot moved away from the pose it was planned from in the meantime, it is planned again.
+     * Any stick input cancels it. gamepad1 back stores the current pose as the launch zone.
+     */
+    public boolean autoDrive(MecanumDrive drive){
+        if (gamepad1.back) {
+            Pose2d pose = drive.localizer.getPose();
+            PARAMS.launchZoneX = pose.position.x;
+            PARAMS.launchZoneY = pose.position.y;
+            PARAMS.launchZoneHeadingDeg = Math.toDegrees(pose.heading.toDouble());
+        }
+        if (aggregator != null) {
+            aggregator.put(launchXSlot, PARAMS.launchZoneX);
+            aggregator.put(launchYSlot, PARAMS.launchZoneY);
+            aggregator.put(launchHeadingSlot, PARAMS.launchZoneHeadingDeg);
+        }
+
+        boolean button = gamepad1.y;
+        if (button && !lastAutoDriveButton && planner != null) {
+            autoDrive = null;
+            planAutoDrive(drive);
+        }
+        lastAutoDriveButton = button;
+
+        if (autoDrivePlan == null && autoDrive == null) {
+            return false;
+        }
+
+        if (Math.abs(gamepad1.left_stick_x) > PARAMS.cancelDeadband
+                || Math.abs(gamepad1.left_stick_y) > PARAMS.cancelDeadband
+                || Math.abs(gamepad1.right_stick_x) > PARAMS.cancelDeadband) {
+            cancelAutoDrive();
+            return false;
+        }
+
+        if (autoDrive == null) {
+            if (!autoDrivePlan.isDone()) {
+                return false;
+            }
+            try {
+                autoDrive = autoDrivePlan.get();
+            } catch (CancellationException | ExecutionException | InterruptedException e) {
+                autoDrivePlan = null;
+                return false;
+            }
+            autoDrivePlan = null;
+
+            // the plan starts where the robot was when it was asked for
+            Pose2d pose = drive.localizer.getPose();
+            if (pose.position.minus(autoDriveStart.position).norm() > PARAMS.replanDistance
+                    || Math.abs(pose.heading.minus(autoDriveStart.heading))
+                            > Math.toRadians(PARAMS.replanHeadingDeg)) {
+                autoDrive = null;
+                planAutoDrive(drive);
+                return false;
+            }
+
+            autoDrivePreview = new Canvas();
+            autoDrive.preview(autoDrivePreview);
+        }
+
+        // like FieldRenderer.runBlocking: the action draws the robot and the path comes from its
+        // preview, both only on the drive renderer's frames
+        TelemetryPacket packet = new TelemetryPacket();
+        if (drive.renderer.shouldRender(packet)) {
+            packet.fieldOverlay().getOperations().addAll(autoDrivePreview.getOperations());
+        }
+        if (!autoDrive.run(packet)) {
+            autoDrive = null;
+        }
+        // send just the render frames
+        if (!packet.fieldOverlay().getOperations().isEmpty()) {
+            FtcDashboard.getInstance().sendTelemetryPacket(packet);
+        }
+        return true;
+    }
+
+    /**
+     * True while an auto-drive action is running (it does its own pose updates).
+     */
+    public boolean followingAutoDrive(){
+        return autoDrive != null;
+    }
+
+    private void planAutoDrive(MecanumDrive drive){
+        autoDriveStart = drive.localizer.getPose();
+        autoDrivePlan = planner.plan(autoDriveStart, new Pose2d(
+                PARAMS.launchZoneX, PARAMS.launchZoneY, Math.toRadians(PARAMS.launchZoneHeadingDeg)));
+    }
+
+    public void cancelAutoDrive(){
+        if (planner != null) {
+            planner.cancel();
+        }
+        autoDrivePlan = null;
+        autoDrive = null;
+        autoDrivePreview = null;
+    }
     public void intake(MecanumDrive drive){
         if(gamepad2.right_bumper){
             drive.intake.setPower(1.0);
@@ -53,17 +214,38 @@ public class DriveCodeCommon extends LinearOpMode {
         drive.launcher.setPower(-1.0);
     }
     public void holder(MecanumDrive drive){
-        int red = drive.paddle1.red();
-        int blue = drive.paddle1.blue();
-        int green = drive.paddle1.green();
-        boolean detectPurple = false;
-        boolean detectGreen = false;
-        telemetry.addData("red",red);
-        telemetry.addData("green",green);
-        telemetry.addData("blue",blue);
-        telemetry.update();
+        ColorSensorPoller.Sample color = drive.paddle1Poller.getLatest();
+        int red = color.red;
+        int blue = color.blue;
+        int green = color.green;
+        // telemetry isn't set yet when the fields initialize, so subclasses that skip
+        // setupTelemetry() get it here on first use
+        if (aggregator == null) {
+            setupTelemetry();
+        }
+        // published values go out on the aggregator's next flush, not every loop
+        aggregator.put(redSlot,red);
+        aggregator.put(greenSlot,green);
+        aggregator.put(blueSlot,blue);
+        aggregator.put(staleSlot,color.isStale());
+        aggregator.put(skippedWritesSlot,drive.getSkippedWrites());
+        aggregator.put(bulkReadsSlot,drive.bulkReads.getReadsPerCycle());
+        aggregator.put(bulkLatencySlot,drive.bulkReads.getLastLatencyMs());
 
+        // only reclassify on a fresh sample; repeats keep the last detection
+        if(color.sequence != lastColorSequence){
+            lastColorSequence = color.sequence;
+            classify(red, green, blue);
+        }
 
+        if(detectPurple || detectGreen||gamepad2.dpad_right){
+            drive.paddleOne.setPosition(padllecatch);
+        }
+        else {
+            drive.paddleOne.setPosition(paddlewaiting);
+        }
+}
+    public void classify(int red, int green, int blue){
         if(red > PURPLE_RED_MIN &&
                 blue > PURPLE_BLUE_MIN &&
                 green < PURPLE_GREEN_MAX){
@@ -82,12 +264,5 @@ public class DriveCodeCommon extends LinearOpMode {
         else {
             detectGreen = false;
         }
-
-        if(detectPurple || detectGreen||gamepad2.dpad_right){
-            drive.paddleOne.setPosition(padllecatch);
-        }
-        else {
-            drive.paddleOne.setPosition(paddlewaiting);
-        }
-}
+    }
 }
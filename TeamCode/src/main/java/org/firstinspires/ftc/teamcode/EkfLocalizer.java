@@ -0,0 +1,395 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.acmerobotics.dashboard.telemetry.TelemetryPacket;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+
+import org.firstinspires.ftc.robotcore.external.hardware.camera.WebcamName;
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.Position;
+import org.firstinspires.ftc.robotcore.external.navigation.YawPitchRollAngles;
+import org.firstinspires.ftc.vision.VisionPortal;
+import org.firstinspires.ftc.vision.apriltag.AprilTagDetection;
+import org.firstinspires.ftc.vision.apriltag.AprilTagProcessor;
+
+import java.util.List;
+
+/**
+ * Extended Kalman filter over (x, y, heading) that predicts with the drive encoders' increments
+ * and corrects with IMU yaw and, when a processor is attached, AprilTag robot poses.
+ * <p>
+ * Tag frames are fused against the filter's own pose at the frame's acquisition time, so the
+ * camera's latency doesn't pull the estimate backwards. Measurements whose Mahalanobis distance
+ * exceeds the chi-square gate are rejected; a run of rejections from one sensor means the
+ * filter is overconfident, so the covariance is inflated until that sensor gets back in.
+ * All filter state lives in preallocated arrays; the updates themselves allocate nothing.
+ */
+@Config
+public final class EkfLocalizer implements Localizer {
+    public static class Params {
+        // process noise, as variance per unit of motion, so the added uncertainty depends on
+        // how far the robot went and not on how many loop ticks it took
+        public double transVarPerIn = 0.01; // in^2 per in: ~1 in std after 100 in
+        public double headingVarPerRad = 1e-4; // rad^2 per rad turned
+        public double headingVarPerIn = 1e-5; // rad^2 per in driven
+
+        // measurement noise
+        public double imuYawStdDeg = 0.5;
+        public double tagPosStdIn = 2.0;
+        public double tagYawStdDeg = 5.0;
+
+        // chi-square gates at 95%: 1 dof for yaw, 3 dof for a full tag pose
+        public double imuGate = 3.84;
+        public double tagGate = 7.81;
+
+        // after this many rejections in a row from one sensor, scale P up by rejectionInflation
+        public int maxConsecutiveRejections = 10;
+        public double rejectionInflation = 4;
+
+        public int historyCapacity = 100;
+
+        // camera mounting on the robot, as in ConceptAprilTagLocalization
+        public String webcamName = "Webcam 1";
+        public double cameraXIn = 0, cameraYIn = 0, cameraZIn = 0;
+        public double cameraYawDeg = 0, cameraPitchDeg = -90, cameraRollDeg = 0;
+    }
+
+    public static Params PARAMS = new Params();
+
+    public final MecanumDrive.DriveLocalizer odometry;
+    private AprilTagProcessor tags;
+
+    // state and row-major covariance
+    private double x, y, heading;
+    private final double[] p = new double[9];
+
+    // scratch, reused every update
+    private final double[] tmp = new double[9];
+    private final double[] s = new double[9];
+    private final double[] sInv = new double[9];
+    private final double[] k = new double[9];
+    private final double[] innovation = new double[3];
+    private final double[] past = new double[3];
+
+    private final PoseRingBuffer history = new PoseRingBuffer(PARAMS.historyCapacity);
+
+    private double yawOffset;
+    private boolean yawAligned;
+    private long lastTagFrameNanos;
+
+    private long imuAccepted, imuRejected, tagAccepted, tagRejected;
+    private int imuRejectRun, tagRejectRun;
+    private long inflations;
+
+    public EkfLocalizer(MecanumDrive.DriveLocalizer odometry) {
+        this.odometry = odometry;
+        setPose(odometry.getPose());
+    }
+
+    /**
+     * Starts fusing detections from the processor; null stops.
+     */
+    public void setAprilTags(AprilTagProcessor tags) {
+        this.tags = tags;
+    }
+
+    /**
+     * Builds an AprilTag processor with the camera pose from {@link Params} and starts a
+     * VisionPortal streaming into it.
+     */
+    public static AprilTagProcessor buildAprilTagProcessor(HardwareMap hardwareMap) {
+        AprilTagProcessor processor = new AprilTagProcessor.Builder()
+                .setCameraPose(
+                        new Position(DistanceUnit.INCH,
+                                PARAMS.cameraXIn, PARAMS.cameraYIn, PARAMS.cameraZIn, 0),
+                        new YawPitchRollAngles(AngleUnit.DEGREES,
+                                PARAMS.cameraYawDeg, PARAMS.cameraPitchDeg, PARAMS.cameraRollDeg, 0))
+                .build();
+
+        new VisionPortal.Builder()
+                .setCamera(hardwareMap.get(WebcamName.class, PARAMS.webcamName))
+                .addProcessor(processor)
+                .build();
+
+        return processor;
+    }
+
+    @Override
+    public void setPose(Pose2d pose) {
+        odometry.setPose(pose);
+
+        x = pose.position.x;
+        y = pose.position.y;
+        heading = pose.heading.toDouble();
+        for (int i = 0; i < 9; i++) {
+            p[i] = 0;
+        }
+
+        // re-reference the IMU to the new heading on the next update
+        yawAligned = false;
+        history.clear();
+    }
+
+    @Override
+    public Pose2d getPose() {
+        return new Pose2d(x, y, heading);
+    }
+
+    @Override
+    public PoseVelocity2d update() {
+        PoseVelocity2d vel = odometry.update();
+        long now = System.nanoTime();
+
+        predict(odometry.lastDx, odometry.lastDy, odometry.lastWheelDHeading);
+
+        if (!yawAligned) {
+            yawOffset = heading - odometry.lastYaw;
+            yawAligned = true;
+        } else if (odometry.imuFresh) {
+            correctYaw(odometry.lastYaw + yawOffset);
+        }
+
+        if (tags != null) {
+            correctTags();
+        }
+
+        history.add(x, y, heading, now);
+        return vel;
+    }
+
+    private void predict(double dx, double dy, double dHeading) {
+        double c = Math.cos(heading), sn = Math.sin(heading);
+        double dxWorld = c * dx - sn * dy;
+        double dyWorld = sn * dx + c * dy;
+
+        x += dxWorld;
+        y += dyWorld;
+        heading += dHeading;
+
+        // P = F P F^T with F = [[1, 0, -dyWorld], [0, 1, dxWorld], [0, 0, 1]]
+        double f02 = -dyWorld, f12 = dxWorld;
+        for (int j = 0; j < 3; j++) {
+            tmp[j] = p[j] + f02 * p[6 + j];
+            tmp[3 + j] = p[3 + j] + f12 * p[6 + j];
+            tmp[6 + j] = p[6 + j];
+        }
+        for (int i = 0; i < 3; i++) {
+            p[i * 3] = tmp[i * 3] + tmp[i * 3 + 2] * f02;
+            p[i * 3 + 1] = tmp[i * 3 + 1] + tmp[i * 3 + 2] * f12;
+            p[i * 3 + 2] = tmp[i * 3 + 2];
+        }
+
+        // + Q, isotropic in translation so it needs no rotation into the world frame
+        double dist = Math.hypot(dx, dy);
+        p[0] += PARAMS.transVarPerIn * dist;
+        p[4] += PARAMS.transVarPerIn * dist;
+        p[8] += PARAMS.headingVarPerRad * Math.abs(dHeading) + PARAMS.headingVarPerIn * dist;
+    }
+
+    private void correctYaw(double yaw) {
+        double r = Math.toRadians(PARAMS.imuYawStdDeg);
+        double innov = wrap(yaw - heading);
+        double sVar = p[8] + r * r;
+
+        if (innov * innov / sVar > PARAMS.imuGate) {
+            imuRejected++;
+            if (++imuRejectRun >= PARAMS.maxConsecutiveRejections) {
+                imuRejectRun = 0;
+                inflate();
+            }
+            return;
+        }
+        imuAccepted++;
+        imuRejectRun = 0;
+
+        // K = P H^T / S with H = [0, 0, 1], i.e. the heading column of P
+        double k0 = p[2] / sVar, k1 = p[5] / sVar, k2 = p[8] / sVar;
+        x += k0 * innov;
+        y += k1 * innov;
+        heading += k2 * innov;
+
+        // P -= K H P: subtract K times the heading row
+        double r0 = p[6], r1 = p[7], r2 = p[8];
+        p[0] -= k0 * r0; p[1] -= k0 * r1; p[2] -= k0 * r2;
+        p[3] -= k1 * r0; p[4] -= k1 * r1; p[5] -= k1 * r2;
+        p[6] -= k2 * r0; p[7] -= k2 * r1; p[8] -= k2 * r2;
+        symmetrize();
+    }
+
+    private void correctTags() {
+        List<AprilTagDetection> detections = tags.getDetections();
+        if (detections == null) {
+            return;
+        }
+
+        long newestFrame = lastTagFrameNanos;
+        for (int i = 0; i < detections.size(); i++) {
+            AprilTagDetection d = detections.get(i);
+            // robotPose is only filled in for tags with field positions in the library
+            if (d.robotPose == null || d.frameAcquisitionNanoTime <= lastTagFrameNanos) {
+                continue;
+            }
+            newestFrame = Math.max(newestFrame, d.frameAcquisitionNanoTime);
+
+            Position pos = d.robotPose.getPosition().toUnit(DistanceUnit.INCH);
+            correctPose(pos.x, pos.y, d.robotPose.getOrientation().getYaw(AngleUnit.RADIANS),
+                    d.frameAcquisitionNanoTime);
+        }
+        lastTagFrameNanos = newestFrame;
+    }
+
+    /**
+     * Fuses a full pose measured at frameNanos. The innovation is taken against the filter's
+     * pose at that time and the correction applied to the current state.
+     */
+    private void correctPose(double zx, double zy, double zHeading, long frameNanos) {
+        if (!history.poseAt(frameNanos, past)) {
+            past[0] = x;
+            past[1] = y;
+            past[2] = heading;
+        }
+        innovation[0] = zx - past[0];
+        innovation[1] = zy - past[1];
+        innovation[2] = wrap(zHeading - past[2]);
+
+        double rPos = PARAMS.tagPosStdIn * PARAMS.tagPosStdIn;
+        double rYaw = Math.toRadians(PARAMS.tagYawStdDeg);
+        System.arraycopy(p, 0, s, 0, 9);
+        s[0] += rPos;
+        s[4] += rPos;
+        s[8] += rYaw * rYaw;
+        if (!invert3(s, sInv)) {
+            tagRejected++;
+            return;
+        }
+
+        double d2 = 0;
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                d2 += innovation[i] * sInv[i * 3 + j] * innovation[j];
+            }
+        }
+        if (d2 > PARAMS.tagGate) {
+            tagRejected++;
+            if (++tagRejectRun >= PARAMS.maxConsecutiveRejections) {
+                tagRejectRun = 0;
+                inflate();
+            }
+            return;
+        }
+        tagAccepted++;
+        tagRejectRun = 0;
+
+        // K = P S^-1, state += K y, P = (I - K) P
+        multiply3(p, sInv, k);
+        x += k[0] * innovation[0] + k[1] * innovation[1] + k[2] * innovation[2];
+        y += k[3] * innovation[0] + k[4] * innovation[1] + k[5] * innovation[2];
+        heading += k[6] * innovation[0] + k[7] * innovation[1] + k[8] * innovation[2];
+
+        multiply3(k, p, tmp);
+        for (int i = 0; i < 9; i++) {
+            p[i] -= tmp[i];
+        }
+        symmetrize();
+    }
+
+    // the gates only let measurements in relative to P, so a filter that drifted while
+    // overconfident would reject every correction from then on
+    private void inflate() {
+        for (int i = 0; i < 9; i++) {
+            p[i] *= PARAMS.rejectionInflation;
+        }
+        inflations++;
+    }
+
+    private void symmetrize() {
+        double a = 0.5 * (p[1] + p[3]);
+        double b = 0.5 * (p[2] + p[6]);
+        double c = 0.5 * (p[5] + p[7]);
+        p[1] = p[3] = a;
+        p[2] = p[6] = b;
+        p[5] = p[7] = c;
+    }
+
+    private static void multiply3(double[] a, double[] b, double[] out) {
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                out[i * 3 + j] = a[i * 3] * b[j] + a[i * 3 + 1] * b[3 + j] + a[i * 3 + 2] * b[6 + j];
+            }
+        }
+    }
+
+    private static boolean invert3(double[] m, double[] out) {
+        double c00 = m[4] * m[8] - m[5] * m[7];
+        double c01 = m[5] * m[6] - m[3] * m[8];
+        double c02 = m[3] * m[7] - m[4] * m[6];
+        double det = m[0] * c00 + m[1] * c01 + m[2] * c02;
+        if (Math.abs(det) < 1e-12) {
+            return false;
+        }
+
+        double inv = 1 / det;
+        out[0] = c00 * inv;
+        out[1] = (m[2] * m[7] - m[1] * m[8]) * inv;
+        out[2] = (m[1] * m[5] - m[2] * m[4]) * inv;
+        out[3] = c01 * inv;
+        out[4] = (m[0] * m[8] - m[2] * m[6]) * inv;
+        out[5] = (m[2] * m[3] - m[0] * m[5]) * inv;
+        out[6] = c02 * inv;
+        out[7] = (m[1] * m[6] - m[0] * m[7]) * inv;
+        out[8] = (m[0] * m[4] - m[1] * m[3]) * inv;
+        return true;
+    }
+
+    private static double wrap(double angle) {
+        return Math.atan2(Math.sin(angle), Math.cos(angle));
+    }
+
+    /**
+     * Returns covariance entry (row, col) over (x in, y in, heading rad).
+     */
+    public double getCovariance(int row, int col) {
+        return p[row * 3 + col];
+    }
+
+    public double getXStd() {
+        return Math.sqrt(Math.max(0, p[0]));
+    }
+
+    public double getYStd() {
+        return Math.sqrt(Math.max(0, p[4]));
+    }
+
+    public double getHeadingStd() {
+        return Math.sqrt(Math.max(0, p[8]));
+    }
+
+    public long getTagAccepted() {
+        return tagAccepted;
+    }
+
+    public long getTagRejected() {
+        return tagRejected;
+    }
+
+    public long getImuRejected() {
+        return imuRejected;
+    }
+
+    /**
+     * Writes the standard deviations and gate counts into the packet.
+     */
+    public void report(TelemetryPacket packet) {
+        packet.put("ekf x std (in)", getXStd());
+        packet.put("ekf y std (in)", getYStd());
+        packet.put("ekf heading std (deg)", Math.toDegrees(getHeadingStd()));
+        packet.put("ekf imu accepted", imuAccepted);
+        packet.put("ekf imu rejected", imuRejected);
+        packet.put("ekf tags accepted", tagAccepted);
+        packet.put("ekf tags rejected", tagRejected);
+        packet.put("ekf covariance inflations", inflations);
+    }
+}
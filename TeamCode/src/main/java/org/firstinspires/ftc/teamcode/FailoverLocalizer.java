@@ -0,0 +1,150 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.acmerobotics.dashboard.telemetry.TelemetryPacket;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+import com.acmerobotics.roadrunner.ftc.FlightRecorder;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.teamcode.messages.LocalizerFailoverMessage;
+
+/**
+ * Runs a primary localizer (Pinpoint, OTOS) alongside a secondary (drive encoders) and reports
+ * whichever is healthy. The secondary runs undisturbed in its own frame; while the primary is
+ * healthy the transform from that frame to the primary's is refreshed every cycle and applied to
+ * the secondary's pose on read, so when the primary fails the secondary continues from the last
+ * good pose in the same cycle, without a jump and without resetting its filter state. The
+ * primary is trusted again after recoverCycles healthy cycles in a row, re-referenced to the
+ * aligned secondary pose so switching back doesn't jump either.
+ */
+@Config
+public final class FailoverLocalizer implements Localizer {
+    public static class Params {
+        public int recoverCycles = 25;
+    }
+
+    public static Params PARAMS = new Params();
+
+    private static final String TAG = "FailoverLocalizer";
+
+    public final Localizer primary, secondary;
+
+    private boolean onSecondary;
+    private int healthyStreak;
+
+    // primary frame * secondary frame^-1, applied to the secondary's pose on read
+    private double offsetX, offsetY, offsetHeading;
+
+    private long cycles, secondaryCycles, failovers, recoveries;
+    private long lastFailoverNanos;
+
+    public FailoverLocalizer(Localizer primary, Localizer secondary) {
+        this.primary = primary;
+        this.secondary = secondary;
+        secondary.setPose(primary.getPose());
+    }
+
+    @Override
+    public void setPose(Pose2d pose) {
+        primary.setPose(pose);
+        secondary.setPose(pose);
+        offsetX = offsetY = offsetHeading = 0;
+    }
+
+    @Override
+    public Pose2d getPose() {
+        return onSecondary ? alignedSecondaryPose() : primary.getPose();
+    }
+
+    /**
+     * Returns the secondary's pose carried into the primary's frame.
+     */
+    public Pose2d alignedSecondaryPose() {
+        Pose2d s = secondary.getPose();
+        double c = Math.cos(offsetHeading), sn = Math.sin(offsetHeading);
+        return new Pose2d(
+                offsetX + c * s.position.x - sn * s.position.y,
+                offsetY + sn * s.position.x + c * s.position.y,
+                offsetHeading + s.heading.toDouble());
+    }
+
+    // offset = primary * secondary^-1, so that offset * secondary is the primary's pose
+    private void align() {
+        Pose2d p = primary.getPose(), s = secondary.getPose();
+        offsetHeading = p.heading.toDouble() - s.heading.toDouble();
+        double c = Math.cos(offsetHeading), sn = Math.sin(offsetHeading);
+        offsetX = p.position.x - (c * s.position.x - sn * s.position.y);
+        offsetY = p.position.y - (sn * s.position.x + c * s.position.y);
+    }
+
+    @Override
+    public PoseVelocity2d update() {
+        cycles++;
+        PoseVelocity2d primaryVel = primary.update();
+        PoseVelocity2d secondaryVel = secondary.update();
+
+        boolean primaryHealthy = primary.isHealthy();
+        healthyStreak = primaryHealthy ? healthyStreak + 1 : 0;
+
+        if (!onSecondary && !primaryHealthy) {
+            onSecondary = true;
+            failovers++;
+            lastFailoverNanos = System.nanoTime();
+            FlightRecorder.write("LOCALIZER_FAILOVER", new LocalizerFailoverMessage(true, alignedSecondaryPose()));
+            RobotLog.ww(TAG, "%s unhealthy, continuing on %s",
+                    primary.getClass().getSimpleName(), secondary.getClass().getSimpleName());
+        } else if (onSecondary && healthyStreak >= PARAMS.recoverCycles) {
+            primary.setPose(alignedSecondaryPose());
+            onSecondary = false;
+            recoveries++;
+            FlightRecorder.write("LOCALIZER_FAILOVER", new LocalizerFailoverMessage(false, primary.getPose()));
+            RobotLog.ii(TAG, "%s healthy for %d cycles, switching back",
+                    primary.getClass().getSimpleName(), healthyStreak);
+        }
+
+        if (onSecondary) {
+            secondaryCycles++;
+            return secondaryVel;
+        }
+
+        align();
+        return primaryVel;
+    }
+
+    @Override
+    public boolean isHealthy() {
+        return primary.isHealthy() || secondary.isHealthy();
+    }
+
+    public boolean isOnSecondary() {
+        return onSecondary;
+    }
+
+    public long getFailovers() {
+        return failovers;
+    }
+
+    public long getRecoveries() {
+        return recoveries;
+    }
+
+    /**
+     * Returns the fraction of cycles that ran on the secondary.
+     */
+    public double getSecondaryFraction() {
+        return cycles == 0 ? 0 : (double) secondaryCycles / cycles;
+    }
+
+    public double getSecondsSinceFailover() {
+        return failovers == 0 ? Double.NaN : (System.nanoTime() - lastFailoverNanos) / 1e9;
+    }
+
+    public void report(TelemetryPacket p) {
+        p.put("localizer on secondary", onSecondary);
+        p.put("localizer primary healthy streak", healthyStreak);
+        p.put("localizer failovers", failovers);
+        p.put("localizer recoveries", recoveries);
+        p.put("localizer secondary fraction", getSecondaryFraction());
+    }
+}
@@ -0,0 +1,85 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.dashboard.FtcDashboard;
+import com.acmerobotics.dashboard.canvas.Canvas;
+import com.acmerobotics.dashboard.config.Config;
+import com.acmerobotics.dashboard.telemetry.TelemetryPacket;
+import com.acmerobotics.roadrunner.Action;
+
+/**
+ * Decides which control ticks draw the field overlay, so drawing runs at a fixed low rate
+ * instead of the control rate. Turn {@code render} off (from the dashboard config, or in the
+ * OpMode when no dashboard will be watching, e.g. at competition) to skip drawing entirely;
+ * {@link #runBlocking} then sends nothing to the dashboard either.
+ * The dashboard keeps showing the last overlay it received, so packets between render frames
+ * carry no canvas operations. That needs the preview to go only onto render frames too: run
+ * drive actions through {@link #runBlocking} (or attach the preview the same way, as
+ * DriveCodeCommon does), not RoadRunner's {@code Actions.runBlocking}, which puts the path on
+ * every packet and so blanks the robot between frames.
+ */
+@Config
+public final class FieldRenderer {
+    public static class Params {
+        public boolean render = true;
+        public double renderPeriodMs = 100;
+    }
+
+    public static Params PARAMS = new Params();
+
+    private long lastRenderNanos = Long.MIN_VALUE;
+
+    private TelemetryPacket framePacket;
+    private boolean frameRenders;
+
+    /**
+     * Returns whether this packet should get the overlay. Every action that shares the packet
+     * gets the same answer, so one tick either draws everything or nothing.
+     */
+    public boolean shouldRender(TelemetryPacket p) {
+        if (p == framePacket) {
+            return frameRenders;
+        }
+
+        framePacket = p;
+        long now = System.nanoTime();
+        frameRenders = PARAMS.render && (lastRenderNanos == Long.MIN_VALUE
+                || now - lastRenderNanos >= PARAMS.renderPeriodMs * 1e6);
+        if (frameRenders) {
+            lastRenderNanos = now;
+        }
+        return frameRenders;
+    }
+
+    /**
+     * Runs the action to completion like {@code Actions.runBlocking}, but computes the preview
+     * (the static path geometry) once and only attaches it to render frames. With render off
+     * it reuses one packet and sends nothing.
+     */
+    public void runBlocking(Action a) {
+        if (!PARAMS.render) {
+            // nobody is watching: the actions' telemetry overwrites the same keys, and anything
+            // drawn regardless of shouldRender is cleared so it can't pile up
+            TelemetryPacket p = new TelemetryPacket();
+            while (a.run(p) && !Thread.currentThread().isInterrupted()) {
+                p.fieldOverlay().getOperations().clear();
+            }
+            return;
+        }
+
+        FtcDashboard dash = FtcDashboard.getInstance();
+        Canvas preview = new Canvas();
+        a.preview(preview);
+
+        boolean running = true;
+        while (running && !Thread.currentThread().isInterrupted()) {
+            TelemetryPacket p = new TelemetryPacket();
+            if (shouldRender(p)) {
+                p.fieldOverlay().getOperations().addAll(preview.getOperations());
+            }
+
+            running = a.run(p);
+
+            dash.sendTelemetryPacket(p);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.firstinspires.ftc.teamcode;
+
+/**
+ * Velocity as the least-squares slope through the last window samples. The sums are kept
+ * relative to the newest sample and shifted algebraically as samples arrive, so each update is
+ * O(1) over a fixed ring buffer and the sums stay small enough not to lose precision over a match.
+ */
+public final class LeastSquaresVelocityEstimator implements VelocityEstimator {
+    private final long[] times;
+    private final double[] positions;
+    private int head, count;
+
+    // reference sample the sums are taken relative to (always the newest)
+    private long refTime;
+    private double refPosition;
+    // sums of t, x, t^2 and t * x, with t in seconds
+    private double st, sx, stt, stx;
+
+    public LeastSquaresVelocityEstimator(int window) {
+        if (window < 2) {
+            throw new IllegalArgumentException("window must be at least 2");
+        }
+        times = new long[window];
+        positions = new double[window];
+    }
+
+    @Override
+    public double update(long timeNanos, double position) {
+        if (count > 0) {
+            // move the reference to the new sample: sum (t - a)(x - b) etc.
+            double a = (timeNanos - refTime) / 1e9;
+            double b = position - refPosition;
+            stx += count * a * b - b * st - a * sx;
+            stt += count * a * a - 2 * a * st;
+            st -= count * a;
+            sx -= count * b;
+        }
+        refTime = timeNanos;
+        refPosition = position;
+
+        if (count == times.length) {
+            double t = (times[head] - refTime) / 1e9;
+            double x = positions[head] - refPosition;
+            st -= t;
+            sx -= x;
+            stt -= t * t;
+            stx -= t * x;
+            count--;
+        }
+
+        // the new sample is the reference, so it adds nothing to the sums
+        times[head] = timeNanos;
+        positions[head] = position;
+        head = (head + 1) % times.length;
+        count++;
+
+        double denom = count * stt - st * st;
+        if (count < 2 || denom <= 0) {
+            return 0;
+        }
+        return (count * stx - st * sx) / denom;
+    }
+}
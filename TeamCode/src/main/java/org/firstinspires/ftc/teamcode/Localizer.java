@@ -22,4 +22,12 @@ public interface Localizer {
      * @return the Localizer's current velocity estimate
      */
     PoseVelocity2d update();
+
+    /**
+     * Returns whether the last update() produced a trustworthy estimate.
+     * Localizers without a way to tell always report true.
+     */
+    default boolean isHealthy() {
+        return true;
+    }
 }
@@ -0,0 +1,181 @@
+package org.firstinspires.ftc.teamcode;
+
+import androidx.annotation.NonNull;
+
+import com.acmerobotics.dashboard.FtcDashboard;
+import com.acmerobotics.dashboard.canvas.Canvas;
+import com.acmerobotics.dashboard.config.Config;
+import com.acmerobotics.dashboard.telemetry.TelemetryPacket;
+import com.acmerobotics.roadrunner.Action;
+
+import java.util.Arrays;
+
+/**
+ * Times named loop stages into preallocated fixed-bucket histograms.
+ * Recording a sample never allocates; only the throttled report builds strings.
+ * <pre>
+ * int drives = profiler.addStage("drives");
+ * ...
+ * long t = profiler.start();
+ * drives(drive);
+ * profiler.stop(drives, t);
+ * profiler.publish();
+ * </pre>
+ */
+@Config
+public final class LoopProfiler {
+    public static class Params {
+        public double reportPeriodMs = 500;
+    }
+
+    public static Params PARAMS = new Params();
+
+    // 0.1 ms buckets up to 50 ms; the last bucket collects everything slower
+    private static final long BUCKET_NANOS = 100_000;
+    private static final int BUCKETS = 501;
+
+    private final String[] names, p50Keys, p99Keys, maxKeys;
+    private final long[][] counts;
+    private final long[] samples, maxNanos;
+    private int stageCount;
+
+    private long lastReportNanos;
+
+    public LoopProfiler(int maxStages) {
+        names = new String[maxStages];
+        p50Keys = new String[maxStages];
+        p99Keys = new String[maxStages];
+        maxKeys = new String[maxStages];
+        counts = new long[maxStages][BUCKETS];
+        samples = new long[maxStages];
+        maxNanos = new long[maxStages];
+    }
+
+    /**
+     * Registers a stage and returns the handle to pass to {@link #stop(int, long)}.
+     */
+    public int addStage(String name) {
+        if (stageCount == names.length) {
+            throw new IllegalStateException("profiler is full; raise maxStages");
+        }
+
+        int stage = stageCount++;
+        names[stage] = name;
+        p50Keys[stage] = name + " p50 (ms)";
+        p99Keys[stage] = name + " p99 (ms)";
+        maxKeys[stage] = name + " max (ms)";
+        return stage;
+    }
+
+    public long start() {
+        return System.nanoTime();
+    }
+
+    public void stop(int stage, long startNanos) {
+        record(stage, System.nanoTime() - startNanos);
+    }
+
+    public void record(int stage, long nanos) {
+        int bucket = (int) Math.min(BUCKETS - 1, Math.max(0, nanos / BUCKET_NANOS));
+        counts[stage][bucket]++;
+        samples[stage]++;
+        if (nanos > maxNanos[stage]) {
+            maxNanos[stage] = nanos;
+        }
+    }
+
+    /**
+     * Returns the upper edge of the bucket holding quantile q, or the max for the overflow bucket.
+     */
+    public double percentileMs(int stage, double q) {
+        long n = samples[stage];
+        if (n == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(q * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            seen += counts[stage][i];
+            if (seen >= target) {
+                return Math.min((i + 1) * BUCKET_NANOS, maxNanos[stage]) / 1e6;
+            }
+        }
+        return maxMs(stage);
+    }
+
+    public double maxMs(int stage) {
+        return maxNanos[stage] / 1e6;
+    }
+
+    public String getName(int stage) {
+        return names[stage];
+    }
+
+    public int getStageCount() {
+        return stageCount;
+    }
+
+    public void reset() {
+        for (int i = 0; i < stageCount; i++) {
+            Arrays.fill(counts[i], 0);
+            samples[i] = 0;
+            maxNanos[i] = 0;
+        }
+    }
+
+    /**
+     * Writes p50/p99/max for every stage into the packet if the report period has elapsed.
+     * @return whether anything was written
+     */
+    public boolean report(TelemetryPacket p) {
+        long now = System.nanoTime();
+        if (now - lastReportNanos < PARAMS.reportPeriodMs * 1e6) {
+            return false;
+        }
+        lastReportNanos = now;
+
+        for (int i = 0; i < stageCount; i++) {
+            p.put(p50Keys[i], percentileMs(i, 0.5));
+            p.put(p99Keys[i], percentileMs(i, 0.99));
+            p.put(maxKeys[i], maxMs(i));
+        }
+        return true;
+    }
+
+    /**
+     * Sends the report to FTC Dashboard in its own packet, at most once per report period.
+     */
+    public void publish() {
+        long now = System.nanoTime();
+        if (now - lastReportNanos < PARAMS.reportPeriodMs * 1e6) {
+            return;
+        }
+
+        TelemetryPacket p = new TelemetryPacket();
+        report(p);
+        FtcDashboard.getInstance().sendTelemetryPacket(p);
+    }
+
+    /**
+     * Wraps an action so each of its run() calls is recorded under the stage and reported
+     * into the action's own telemetry packet.
+     */
+    public Action timed(int stage, Action action) {
+        return new Action() {
+            @Override
+            public boolean run(@NonNull TelemetryPacket p) {
+                long t = start();
+                boolean running = action.run(p);
+                stop(stage, t);
+                report(p);
+                return running;
+            }
+
+            @Override
+            public void preview(@NonNull Canvas fieldOverlay) {
+                action.preview(fieldOverlay);
+            }
+        };
+    }
+}
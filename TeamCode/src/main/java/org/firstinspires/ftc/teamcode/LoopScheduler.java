@@ -0,0 +1,228 @@
+package org.firstinspires.ftc.teamcode;
+
+import androidx.annotation.NonNull;
+
+import com.acmerobotics.dashboard.FtcDashboard;
+import com.acmerobotics.dashboard.config.Config;
+import com.acmerobotics.dashboard.telemetry.TelemetryPacket;
+import com.acmerobotics.roadrunner.Action;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs registered tasks on their own cadence inside one loop cycle.
+ * Tasks run in priority order (ties keep registration order). Once the cycle has used up
+ * its budget, due tasks below {@link #PRIORITY_CRITICAL} are deferred to the next cycle,
+ * and a task deferred for a whole period skips that run instead of piling up. A task kept from
+ * running for longer than {@code maxDeferralMs} runs anyway, budget or not, so a busy loop can't
+ * starve it for good.
+ * <p>
+ * From a LinearOpMode call {@link #runCycle()} in the loop; as an Action the scheduler runs
+ * one cycle per run() inside {@code Actions.runBlocking} or another action.
+ */
+@Config
+public final class LoopScheduler implements Action {
+    public static class Params {
+        public double cycleBudgetMs = 20;
+        public double maxDeferralMs = 200;
+    }
+
+    public static Params PARAMS = new Params();
+
+    public static final int PRIORITY_LOW = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_HIGH = 2;
+    public static final int PRIORITY_CRITICAL = 3; // never deferred
+
+    private static final class Task {
+        final String name;
+        final long periodNanos;
+        final int priority;
+        final Runnable runnable;
+        final Action action;
+        final int stage;
+
+        long lastRunNanos = Long.MIN_VALUE;
+        long heldSinceNanos = Long.MIN_VALUE; // first deferral or skip since the last run
+        long deferrals, skips, forcedRuns;
+        boolean finished;
+
+        Task(String name, long periodNanos, int priority, Runnable runnable, Action action, int stage) {
+            this.name = name;
+            this.periodNanos = periodNanos;
+            this.priority = priority;
+            this.runnable = runnable;
+            this.action = action;
+            this.stage = stage;
+        }
+    }
+
+    private final List<Task> tasks = new ArrayList<>();
+    private final LoopProfiler profiler;
+    private final int cycleStage;
+
+    private long cycles, overruns;
+    private boolean hasActions;
+
+    /**
+     * @param profiler times every task and the whole cycle under their own stages; may be null
+     */
+    public LoopScheduler(LoopProfiler profiler) {
+        this.profiler = profiler;
+        cycleStage = profiler == null ? -1 : profiler.addStage("cycle");
+    }
+
+    public LoopScheduler() {
+        this(null);
+    }
+
+    /**
+     * Registers a task that runs every periodMs (0 runs it every cycle).
+     */
+    public void add(String name, double periodMs, int priority, Runnable task) {
+        insert(new Task(name, (long) (periodMs * 1e6), priority, task, null, stageFor(name)));
+    }
+
+    /**
+     * Registers an action; it is dropped once its run() returns false.
+     */
+    public void add(String name, double periodMs, int priority, Action action) {
+        insert(new Task(name, (long) (periodMs * 1e6), priority, null, action, stageFor(name)));
+        hasActions = true;
+    }
+
+    private int stageFor(String name) {
+        return profiler == null ? -1 : profiler.addStage(name);
+    }
+
+    private void insert(Task task) {
+        int i = 0;
+        while (i < tasks.size() && tasks.get(i).priority >= task.priority) {
+            i++;
+        }
+        tasks.add(i, task);
+    }
+
+    /**
+     * Runs one cycle. Action tasks get a fresh packet that is sent to FTC Dashboard afterwards.
+     */
+    public void runCycle() {
+        if (hasActions) {
+            TelemetryPacket p = new TelemetryPacket();
+            runCycle(p);
+            FtcDashboard.getInstance().sendTelemetryPacket(p);
+        } else {
+            runCycle(null);
+        }
+    }
+
+    public void runCycle(TelemetryPacket p) {
+        long cycleStart = System.nanoTime();
+        long budgetNanos = (long) (PARAMS.cycleBudgetMs * 1e6);
+        long maxDeferralNanos = (long) (PARAMS.maxDeferralMs * 1e6);
+
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            if (task.finished) {
+                continue;
+            }
+
+            long now = System.nanoTime();
+            if (task.lastRunNanos != Long.MIN_VALUE && now - task.lastRunNanos < task.periodNanos) {
+                continue;
+            }
+
+            boolean starved = task.heldSinceNanos != Long.MIN_VALUE
+                    && now - task.heldSinceNanos >= maxDeferralNanos;
+            if (task.priority < PRIORITY_CRITICAL && now - cycleStart > budgetNanos && !starved) {
+                if (task.heldSinceNanos == Long.MIN_VALUE) {
+                    task.heldSinceNanos = now;
+                }
+                if (task.lastRunNanos != Long.MIN_VALUE && now - task.lastRunNanos >= 2 * task.periodNanos) {
+                    // a whole period went by deferred; drop this run rather than catching up
+                    task.skips++;
+                    task.lastRunNanos = now;
+                } else {
+                    task.deferrals++;
+                }
+                continue;
+            }
+
+            if (starved && now - cycleStart > budgetNanos) {
+                task.forcedRuns++;
+            }
+            task.lastRunNanos = now;
+            task.heldSinceNanos = Long.MIN_VALUE;
+            if (task.runnable != null) {
+                task.runnable.run();
+            } else {
+                task.finished = !task.action.run(p);
+            }
+            if (profiler != null) {
+                profiler.stop(task.stage, now);
+            }
+        }
+
+        long cycleNanos = System.nanoTime() - cycleStart;
+        cycles++;
+        if (cycleNanos > budgetNanos) {
+            overruns++;
+        }
+        if (profiler != null) {
+            profiler.record(cycleStage, cycleNanos);
+        }
+    }
+
+    /**
+     * Runs one cycle; keeps running while any task is still active.
+     */
+    @Override
+    public boolean run(@NonNull TelemetryPacket p) {
+        runCycle(p);
+        for (int i = 0; i < tasks.size(); i++) {
+            if (!tasks.get(i).finished) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long getCycles() {
+        return cycles;
+    }
+
+    /**
+     * Returns how many cycles ran longer than the cycle budget.
+     */
+    public long getOverruns() {
+        return overruns;
+    }
+
+    public long getDeferrals(String name) {
+        Task task = find(name);
+        return task == null ? 0 : task.deferrals;
+    }
+
+    public long getSkips(String name) {
+        Task task = find(name);
+        return task == null ? 0 : task.skips;
+    }
+
+    /**
+     * Returns how many times the task ran over budget because it had waited maxDeferralMs.
+     */
+    public long getForcedRuns(String name) {
+        Task task = find(name);
+        return task == null ? 0 : task.forcedRuns;
+    }
+
+    private Task find(String name) {
+        for (Task task : tasks) {
+            if (task.name.equals(name)) {
+                return task;
+            }
+        }
+        return null;
+    }
+}
@@ -8,12 +8,9 @@ import com.acmerobotics.dashboard.telemetry.TelemetryPacket;
 import com.acmerobotics.roadrunner.*;
 import com.acmerobotics.roadrunner.AngularVelConstraint;
 import com.acmerobotics.roadrunner.DualNum;
-import com.acmerobotics.roadrunner.HolonomicController;
 import com.acmerobotics.roadrunner.MecanumKinematics;
 import com.acmerobotics.roadrunner.MinVelConstraint;
-import com.acmerobotics.roadrunner.MotorFeedforward;
 import com.acmerobotics.roadrunner.Pose2d;
-import com.acmerobotics.roadrunner.Pose2dDual;
 import com.acmerobotics.roadrunner.ProfileAccelConstraint;
 import com.acmerobotics.roadrunner.Time;
 import com.acmerobotics.roadrunner.TimeTrajectory;
@@ -30,7 +27,6 @@ import com.acmerobotics.roadrunner.ftc.LynxFirmware;
 import com.acmerobotics.roadrunner.ftc.OverflowEncoder;
 import com.acmerobotics.roadrunner.ftc.PositionVelocityPair;
 import com.acmerobotics.roadrunner.ftc.RawEncoder;
-import com.qualcomm.hardware.lynx.LynxModule;
 import com.qualcomm.hardware.rev.RevHubOrientationOnRobot;
 import com.qualcomm.robotcore.hardware.ColorSensor;
 import com.qualcomm.robotcore.hardware.DcMotor;
@@ -40,6 +36,7 @@ import com.qualcomm.robotcore.hardware.HardwareMap;
 import com.qualcomm.robotcore.hardware.IMU;
 import com.qualcomm.robotcore.hardware.Servo;
 import com.qualcomm.robotcore.hardware.VoltageSensor;
+import com.qualcomm.robotcore.util.RobotLog;
 
 import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
 import org.firstinspires.ftc.robotcore.external.navigation.YawPitchRollAngles;
@@ -50,11 +47,13 @@ import org.firstinspires.ftc.teamcode.messages.PoseMessage;
 
 import java.lang.Math;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.function.LongSupplier;
 
 @Config
 public final class MecanumDrive {
+    private static final String TAG = "MecanumDrive";
+
     public static class Params {
         // IMU orientation
         // TODO: fill in these values based on
@@ -83,6 +82,9 @@ public final class MecanumDrive {
         public double maxAngVel = Math.PI; // shared with path
         public double maxAngAccel = Math.PI;
 
+        // number of poses kept for the dashboard trail
+        public int poseHistoryCapacity = 100;
+
         // path controller gains
         public double axialGain = 0.0;
         public double lateralGain = 0.0;
@@ -91,71 +93,180 @@ public final class MecanumDrive {
         public double axialVelGain = 0.0;
         public double lateralVelGain = 0.0;
         public double headingVelGain = 0.0; // shared with turn
+
+        // actuator write caching (writes this close to the last command are skipped)
+        public double powerEpsilon = 0.005;
+        public double servoEpsilon = 0.001;
+
+        // run the localizer on its own fixed-rate thread (see OdometryService)
+        public boolean useOdometryThread = false;
+
+        // read the IMU at most this often and integrate wheel heading in between (0 reads every tick)
+        public double imuReadPeriodMs = 0;
+
+        // fuse wheels and IMU in an EKF (see EkfLocalizer); attach AprilTags with drive.ekf.setAprilTags
+        public boolean useEkf = false;
+
+        // localize on a Pinpoint or OTOS and fall back to the drive encoders (through the EKF
+        // when useEkf is on) whenever it stops reporting healthy (see FailoverLocalizer)
+        public boolean odometryFailover = false;
+        public FailoverPrimary failoverPrimary = FailoverPrimary.PINPOINT;
+
+        // follow dense sample tables (see TrajectorySamples) instead of evaluating trajectories
+        // every tick; cachedActionBuilder always does. sampleDt is the table time step (s)
+        public boolean useSampleTables = false;
+        public double sampleDt = 0.005;
+
+        // inside drive.chain(...), drive actions leave their last command on the motors when they
+        // end instead of zeroing them, so the next one takes over without a stall
+        public boolean chainDriveActions = true;
+
+        // at build time, scale maxWheelVel and the acceleration limits by what the battery can
+        // drive right now: the largest s with kS + s * (kV * maxWheelVel + kA * maxProfileAccel)
+        // <= V - voltageSag, so peak speed and peak acceleration together still fit. voltageSag
+        // allows for the drop under load, since the build-time voltage is the resting one. Above 1
+        // a fresh battery runs faster than the tuned limits, up to maxConstraintScale. Below
+        // lowConstraintScale the build logs a warning; the scale is never raised to meet it.
+        // Quantized (rounding down) so cached trajectories still hit
+        public boolean voltageScaledConstraints = false;
+        public double voltageSag = 1.0;
+        public double lowConstraintScale = 0.7;
+        public double maxConstraintScale = 1.2;
+        public double constraintScaleStep = 0.02;
     }
 
     public static Params PARAMS = new Params();
 
-    public final MecanumKinematics kinematics = new MecanumKinematics(
-            PARAMS.inPerTick * PARAMS.trackWidthTicks, PARAMS.inPerTick / PARAMS.lateralInPerTick);
+    public enum FailoverPrimary {
+        PINPOINT,
+        OTOS
+    }
 
-    public final TurnConstraints defaultTurnConstraints = new TurnConstraints(
-            PARAMS.maxAngVel, -PARAMS.maxAngAccel, PARAMS.maxAngAccel);
-    public final VelConstraint defaultVelConstraint =
-            new MinVelConstraint(Arrays.asList(
-                    kinematics.new WheelVelConstraint(PARAMS.maxWheelVel),
-                    new AngularVelConstraint(PARAMS.maxAngVel)
-            ));
-    public final AccelConstraint defaultAccelConstraint =
-            new ProfileAccelConstraint(PARAMS.minProfileAccel, PARAMS.maxProfileAccel);
 
-    public final DcMotorEx leftFront, leftBack, rightBack, rightFront;
-    public final DcMotor intake, launcher;
-    public final Servo paddleOne;
+    public final MecanumKinematics kinematics = newKinematics();
+
+    public final TurnConstraints defaultTurnConstraints = turnConstraints(1);
+    public final VelConstraint defaultVelConstraint = velConstraint(1);
+    public final AccelConstraint defaultAccelConstraint = accelConstraint(1);
+
+    // raw motors stay private so every write goes through the caches below
+    // (see getRawDriveMotors for the tuning OpModes)
+    private final DcMotorEx leftFront, leftBack, rightBack, rightFront;
+    public final CachingMotor intake, launcher;
+    public final CachingServo paddleOne;
     public final ColorSensor paddle1;
+    public final ColorSensorPoller paddle1Poller;
 
     public final VoltageSensor voltageSensor;
+    public final VoltageService voltageService;
+
+    // the hubs stay in AUTO, which the drive actions rely on, until a loop or the odometry
+    // thread claims the bulk read
+    public final BulkReadManager bulkReads;
+
+    public final FieldRenderer renderer = new FieldRenderer();
 
     public final LazyImu lazyImu;
 
+    private final CachingMotor leftFrontOut, leftBackOut, rightBackOut, rightFrontOut;
+
     public final Localizer localizer;
-    private final LinkedList<Pose2d> poseHistory = new LinkedList<>();
+    public final EkfLocalizer ekf; // null unless PARAMS.useEkf
+    private final PoseRingBuffer poseHistory = new PoseRingBuffer(PARAMS.poseHistoryCapacity);
+    // with the odometry thread, history entries come from its estimates (see updatePoseEstimate)
+    private final OdometryService.Estimate odometryEstimate = new OdometryService.Estimate();
+    private long lastHistorySequence = -1;
 
     private final DownsampledWriter estimatedPoseWriter = new DownsampledWriter("ESTIMATED_POSE", 50_000_000);
     private final DownsampledWriter targetPoseWriter = new DownsampledWriter("TARGET_POSE", 50_000_000);
     private final DownsampledWriter driveCommandWriter = new DownsampledWriter("DRIVE_COMMAND", 50_000_000);
     private final DownsampledWriter mecanumCommandWriter = new DownsampledWriter("MECANUM_COMMAND", 50_000_000);
 
-    public class DriveLocalizer implements Localizer {
+    // control pipeline state, preallocated and reused every tick. Tracking and the wheel writes
+    // allocate nothing, so FollowSamplesAction.run allocates only the boxed telemetry values
+    // (MecanumDriveAllocationTest). FollowTrajectoryAction and TurnAction share that path but
+    // still allocate in RoadRunner's TimeTrajectory.get/TimeTurn.get, which build their DualNum
+    // results on every call; useSampleTables (or cachedActionBuilder) is the allocation-free
+    // route. DriveLocalizer and the render frames also allocate
+    private final TargetState target = new TargetState();
+    private final TrackingController controller = new TrackingController(
+            kinematics.trackWidth, kinematics.lateralMultiplier);
+    // chaining: true only while a ChainedAction is running its action this tick;
+    // stopPending: a chained drive action ended and nothing has driven since
+    private boolean chaining, stopPending;
+    private long lastLogTs, lastPoseLogTs;
+
+    public static class DriveLocalizer implements Localizer {
         public final Encoder leftFront, leftBack, rightBack, rightFront;
         public final IMU imu;
 
-        private int lastLeftFrontPos, lastLeftBackPos, lastRightBackPos, lastRightFrontPos;
-        private Rotation2d lastHeading;
-        private boolean initialized;
-        private Pose2d pose;
+        private final MecanumKinematics kinematics;
 
-        public DriveLocalizer(Pose2d pose) {
-            leftFront = new OverflowEncoder(new RawEncoder(MecanumDrive.this.leftFront));
-            leftBack = new OverflowEncoder(new RawEncoder(MecanumDrive.this.leftBack));
-            rightBack = new OverflowEncoder(new RawEncoder(MecanumDrive.this.rightBack));
-            rightFront = new OverflowEncoder(new RawEncoder(MecanumDrive.this.rightFront));
+        // time base for IMU decimation; replaced with the log's timestamps when replaying
+        private LongSupplier clock = System::nanoTime;
 
-            imu = lazyImu.get();
+        private int lastLeftFrontPos, lastLeftBackPos, lastRightBackPos, lastRightFrontPos;
+        private boolean initialized;
+        private final PoseIntegrator pose;
+
+        // robot-frame kinematics output, reused every update
+        private final double[] increment = new double[3];
+        private final double[] velocity = new double[3];
+
+        // the last update's inputs kept apart, for filters that fuse wheels and IMU themselves:
+        // robot-frame wheel increment (in, in, rad from the wheels alone) and raw IMU yaw (rad).
+        // imuFresh is false on ticks that skipped the IMU read, when lastYaw is from an older sample
+        public double lastDx, lastDy, lastWheelDHeading;
+        public double lastYaw;
+        public boolean imuFresh;
+
+        // IMU decimation: yaw of the last sample and the wheel heading integrated since then
+        private YawPitchRollAngles lastAngles;
+        private long lastImuReadNanos;
+        private double wheelHeadingSinceSample;
+        private double lastDriftCorrection;
+
+        private long updates, imuReads;
+        private long updateNanos, imuReadNanos;
+
+        public DriveLocalizer(MecanumDrive drive, Pose2d pose) {
+            this(new OverflowEncoder(new RawEncoder(drive.leftFront)),
+                    new OverflowEncoder(new RawEncoder(drive.leftBack)),
+                    new OverflowEncoder(new RawEncoder(drive.rightBack)),
+                    new OverflowEncoder(new RawEncoder(drive.rightFront)),
+                    drive.lazyImu.get(), drive.kinematics, pose);
 
             // TODO: reverse encoders if needed
             //   leftFront.setDirection(DcMotorSimple.Direction.REVERSE);
+        }
 
-            this.pose = pose;
+        /**
+         * Runs on any encoders and IMU, e.g. the stand-ins LocalizerReplay feeds from a log.
+         */
+        public DriveLocalizer(Encoder leftFront, Encoder leftBack, Encoder rightBack, Encoder rightFront,
+                              IMU imu, MecanumKinematics kinematics, Pose2d pose) {
+            this.leftFront = leftFront;
+            this.leftBack = leftBack;
+            this.rightBack = rightBack;
+            this.rightFront = rightFront;
+            this.imu = imu;
+            this.kinematics = kinematics;
+
+            this.pose = new PoseIntegrator(pose);
+        }
+
+        public void setClock(LongSupplier clock) {
+            this.clock = clock;
         }
 
         @Override
         public void setPose(Pose2d pose) {
-            this.pose = pose;
+            this.pose.set(pose);
         }
 
         @Override
         public Pose2d getPose() {
-            return pose;
+            return pose.getPose();
         }
 
         @Override
@@ -165,12 +276,21 @@ public final class MecanumDrive {
             PositionVelocityPair rightBackPosVel = rightBack.getPositionAndVelocity();
             PositionVelocityPair rightFrontPosVel = rightFront.getPositionAndVelocity();
 
-            YawPitchRollAngles angles = imu.getRobotYawPitchRollAngles();
+            long start = System.nanoTime();
+            long now = clock.getAsLong();
+            imuFresh = !initialized || PARAMS.imuReadPeriodMs <= 0
+                    || now - lastImuReadNanos >= PARAMS.imuReadPeriodMs * 1e6;
+            double sampleYaw = lastYaw;
+            if (imuFresh) {
+                lastAngles = imu.getRobotYawPitchRollAngles();
+                lastImuReadNanos = now;
+                imuReadNanos += System.nanoTime() - start;
+                imuReads++;
+                lastYaw = lastAngles.getYaw(AngleUnit.RADIANS);
+            }
 
             FlightRecorder.write("MECANUM_LOCALIZER_INPUTS", new MecanumLocalizerInputsMessage(
-                    leftFrontPosVel, leftBackPosVel, rightBackPosVel, rightFrontPosVel, angles));
-
-            Rotation2d heading = Rotation2d.exp(angles.getYaw(AngleUnit.RADIANS));
+                    leftFrontPosVel, leftBackPosVel, rightBackPosVel, rightFrontPosVel, lastAngles, imuFresh));
 
             if (!initialized) {
                 initialized = true;
@@ -180,53 +300,101 @@ public final class MecanumDrive {
                 lastRightBackPos = rightBackPosVel.position;
                 lastRightFrontPos = rightFrontPosVel.position;
 
-                lastHeading = heading;
+                wheelHeadingSinceSample = 0;
 
                 return new PoseVelocity2d(new Vector2d(0.0, 0.0), 0.0);
             }
-
-            double headingDelta = heading.minus(lastHeading);
-            Twist2dDual<Time> twist = kinematics.forward(new MecanumKinematics.WheelIncrements<>(
-                    new DualNum<Time>(new double[]{
-                            (leftFrontPosVel.position - lastLeftFrontPos),
-                            leftFrontPosVel.velocity,
-                    }).times(PARAMS.inPerTick),
-                    new DualNum<Time>(new double[]{
-                            (leftBackPosVel.position - lastLeftBackPos),
-                            leftBackPosVel.velocity,
-                    }).times(PARAMS.inPerTick),
-                    new DualNum<Time>(new double[]{
-                            (rightBackPosVel.position - lastRightBackPos),
-                            rightBackPosVel.velocity,
-                    }).times(PARAMS.inPerTick),
-                    new DualNum<Time>(new double[]{
-                            (rightFrontPosVel.position - lastRightFrontPos),
-                            rightFrontPosVel.velocity,
-                    }).times(PARAMS.inPerTick)
-            ));
+            PoseIntegrator.mecanumForward(kinematics.trackWidth, kinematics.lateralMultiplier,
+                    (leftFrontPosVel.position - lastLeftFrontPos) * PARAMS.inPerTick,
+                    (leftBackPosVel.position - lastLeftBackPos) * PARAMS.inPerTick,
+                    (rightBackPosVel.position - lastRightBackPos) * PARAMS.inPerTick,
+                    (rightFrontPosVel.position - lastRightFrontPos) * PARAMS.inPerTick,
+                    increment);
+            PoseIntegrator.mecanumForward(kinematics.trackWidth, kinematics.lateralMultiplier,
+                    leftFrontPosVel.velocity * PARAMS.inPerTick,
+                    leftBackPosVel.velocity * PARAMS.inPerTick,
+                    rightBackPosVel.velocity * PARAMS.inPerTick,
+                    rightFrontPosVel.velocity * PARAMS.inPerTick,
+                    velocity);
 
             lastLeftFrontPos = leftFrontPosVel.position;
             lastLeftBackPos = leftBackPosVel.position;
             lastRightBackPos = rightBackPosVel.position;
             lastRightFrontPos = rightFrontPosVel.position;
 
-            lastHeading = heading;
+            lastDx = increment[0];
+            lastDy = increment[1];
+            lastWheelDHeading = increment[2];
+
+            // between IMU samples heading comes from the wheels; on a sample, the step is whatever
+            // takes the heading to the IMU's, which also removes the wheels' accumulated drift
+            double headingDelta;
+            if (imuFresh) {
+                double imuDelta = Rotation2d.exp(lastYaw).minus(Rotation2d.exp(sampleYaw));
+                headingDelta = imuDelta - wheelHeadingSinceSample;
+                lastDriftCorrection = headingDelta - lastWheelDHeading;
+                wheelHeadingSinceSample = 0;
+            } else {
+                headingDelta = lastWheelDHeading;
+                wheelHeadingSinceSample += lastWheelDHeading;
+            }
 
-            pose = pose.plus(new Twist2d(
-                    twist.line.value(),
-                    headingDelta
-            ));
+            pose.plus(increment[0], increment[1], headingDelta);
 
-            return twist.velocity().value();
+            updates++;
+            updateNanos += System.nanoTime() - start;
+
+            return new PoseVelocity2d(new Vector2d(velocity[0], velocity[1]), velocity[2]);
+        }
+
+        /**
+         * Returns the heading change (rad) applied at the last IMU sample beyond what the wheels
+         * measured for that tick, i.e. the wheel drift it removed.
+         */
+        public double getLastDriftCorrection() {
+            return lastDriftCorrection;
+        }
+
+        public double getImuReadMs() {
+            return imuReads == 0 ? 0 : imuReadNanos / 1e6 / imuReads;
+        }
+
+        /**
+         * Estimates how much faster update() runs than it would reading the IMU every tick:
+         * (mean update time + IMU time on the skipped ticks) / mean update time.
+         */
+        public double getLoopRateGain() {
+            if (updates == 0 || updateNanos == 0) {
+                return 1;
+            }
+
+            double meanUpdate = (double) updateNanos / updates;
+            double meanImu = imuReads == 0 ? 0 : (double) imuReadNanos / imuReads;
+            double skipped = Math.max(0, 1 - (double) imuReads / updates);
+            return (meanUpdate + meanImu * skipped) / meanUpdate;
         }
     }
 
+    /**
+     * Builds the drive kinematics from the current PARAMS. The drive and its localizer share the
+     * instance built at construction; LocalizerReplay builds its own after restoring PARAMS.
+     */
+    public static MecanumKinematics newKinematics() {
+        return new MecanumKinematics(
+                PARAMS.inPerTick * PARAMS.trackWidthTicks, PARAMS.inPerTick / PARAMS.lateralInPerTick);
+    }
+
     public MecanumDrive(HardwareMap hardwareMap, Pose2d pose) {
+        this(hardwareMap, pose, null);
+    }
+
+    /**
+     * odometry, if not null, replaces the localizer PARAMS would build, e.g. a stand-in in tests.
+     */
+    MecanumDrive(HardwareMap hardwareMap, Pose2d pose, Localizer odometry) {
         LynxFirmware.throwIfModulesAreOutdated(hardwareMap);
 
-        for (LynxModule module : hardwareMap.getAll(LynxModule.class)) {
-            module.setBulkCachingMode(LynxModule.BulkCachingMode.AUTO);
-        }
+        bulkReads = new BulkReadManager(hardwareMap);
 
         // TODO: make sure your config has motors with these names (or change them)
         //   see https://ftc-docs.firstinspires.org/en/latest/hardware_and_software_configuration/configuring/index.html
@@ -235,19 +403,29 @@ public final class MecanumDrive {
         rightBack = hardwareMap.get(DcMotorEx.class, "rightBack");
         rightFront = hardwareMap.get(DcMotorEx.class, "rightFront");
 
-        intake = hardwareMap.get(DcMotor.class, "intake");
+        DcMotor intakeMotor = hardwareMap.get(DcMotor.class, "intake");
 
-        paddleOne = hardwareMap.get(Servo.class,"paddleOne");
+        Servo paddleOneServo = hardwareMap.get(Servo.class,"paddleOne");
 
         paddle1 = hardwareMap.get(ColorSensor.class,"paddle1");
-        launcher = hardwareMap.get(DcMotor.class,"launcher");
+        paddle1Poller = new ColorSensorPoller(paddle1);
+        DcMotor launcherMotor = hardwareMap.get(DcMotor.class,"launcher");
 
         leftFront.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
         leftBack.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
         rightBack.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
         rightFront.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
         rightFront.setDirection(DcMotorSimple.Direction.REVERSE);
-        launcher.setDirection(DcMotorSimple.Direction.REVERSE);
+        launcherMotor.setDirection(DcMotorSimple.Direction.REVERSE);
+
+        leftFrontOut = new CachingMotor(leftFront, PARAMS.powerEpsilon);
+        leftBackOut = new CachingMotor(leftBack, PARAMS.powerEpsilon);
+        rightBackOut = new CachingMotor(rightBack, PARAMS.powerEpsilon);
+        rightFrontOut = new CachingMotor(rightFront, PARAMS.powerEpsilon);
+
+        intake = new CachingMotor(intakeMotor, PARAMS.powerEpsilon);
+        launcher = new CachingMotor(launcherMotor, PARAMS.powerEpsilon);
+        paddleOne = new CachingServo(paddleOneServo, PARAMS.servoEpsilon);
 
         // TODO: reverse motor directions if needed
         //   leftFront.setDirection(DcMotorSimple.Direction.REVERSE);
@@ -258,8 +436,26 @@ public final class MecanumDrive {
                 PARAMS.logoFacingDirection, PARAMS.usbFacingDirection));
 
         voltageSensor = hardwareMap.voltageSensor.iterator().next();
-
-        localizer = new DriveLocalizer(pose);
+        voltageService = new VoltageService(voltageSensor);
+
+        if (odometry != null) {
+            ekf = null;
+        } else {
+            odometry = new DriveLocalizer(this, pose);
+            if (PARAMS.useEkf) {
+                ekf = new EkfLocalizer((DriveLocalizer) odometry);
+                odometry = ekf;
+            } else {
+                ekf = null;
+            }
+            if (PARAMS.odometryFailover) {
+                Localizer primary = PARAMS.failoverPrimary == FailoverPrimary.OTOS
+                        ? new OTOSLocalizer(hardwareMap, pose)
+                        : new PinpointLocalizer(hardwareMap, PARAMS.inPerTick, pose);
+                odometry = new FailoverLocalizer(primary, odometry);
+            }
+        }
+        localizer = PARAMS.useOdometryThread ? new OdometryService(odometry, bulkReads) : odometry;
 
         FlightRecorder.write("MECANUM_PARAMS", PARAMS);
     }
@@ -273,10 +469,114 @@ public final class MecanumDrive {
             maxPowerMag = Math.max(maxPowerMag, power.value());
         }
 
-        leftFront.setPower(wheelVels.leftFront.get(0) / maxPowerMag);
-        leftBack.setPower(wheelVels.leftBack.get(0) / maxPowerMag);
-        rightBack.setPower(wheelVels.rightBack.get(0) / maxPowerMag);
-        rightFront.setPower(wheelVels.rightFront.get(0) / maxPowerMag);
+        setWheelPowers(
+                wheelVels.leftFront.get(0) / maxPowerMag,
+                wheelVels.leftBack.get(0) / maxPowerMag,
+                wheelVels.rightBack.get(0) / maxPowerMag,
+                wheelVels.rightFront.get(0) / maxPowerMag);
+    }
+
+    private void setWheelPowers(double leftFrontPower, double leftBackPower,
+                                double rightBackPower, double rightFrontPower) {
+        leftFrontOut.setPower(leftFrontPower);
+        leftBackOut.setPower(leftBackPower);
+        rightBackOut.setPower(rightBackPower);
+        rightFrontOut.setPower(rightFrontPower);
+    }
+
+    // a drive action that ends inside chain() hands its last command to whatever runs next;
+    // if that isn't a drive action, the chain zeroes the wheels at the end of the tick
+    private void endDriveAction() {
+        if (chaining) {
+            stopPending = true;
+        } else {
+            stopPending = false;
+            setWheelPowers(0, 0, 0, 0);
+        }
+    }
+
+    /**
+     * Runs action with drive-action chaining (if PARAMS.chainDriveActions): consecutive
+     * trajectories and turns inside it hand over the commanded wheel powers instead of
+     * stopping in between, and a segment planned to end moving (see
+     * {@link #actionBuilder(Pose2d, double)}) keeps that velocity into the next. When a drive
+     * action ends and no other one drives in the same tick (a SleepAction or a mechanism
+     * action follows), the wheels are zeroed. Chaining only applies during this action's own
+     * run() calls, so a chain abandoned part way (e.g. by a RaceAction) leaves nothing behind.
+     */
+    public Action chain(Action action) {
+        return new ChainedAction(action);
+    }
+
+    public final class ChainedAction implements Action {
+        private final Action action;
+
+        public ChainedAction(Action action) {
+            this.action = action;
+        }
+
+        @Override
+        public boolean run(@NonNull TelemetryPacket p) {
+            boolean outer = chaining;
+            chaining = PARAMS.chainDriveActions;
+            boolean running;
+            try {
+                running = action.run(p);
+            } finally {
+                chaining = outer;
+            }
+
+            if (!running) {
+                // stops the wheels, or hands over to an enclosing chain
+                endDriveAction();
+                return false;
+            }
+            if (stopPending) {
+                stopPending = false;
+                setWheelPowers(0, 0, 0, 0);
+            }
+            return true;
+        }
+
+        @Override
+        public void preview(Canvas c) {
+            action.preview(c);
+        }
+    }
+
+    /**
+     * Hands out the raw drive motors (left front, left back, right back, right front) for
+     * code that drives them itself, like RoadRunner's tuning OpModes. Their writes bypass the
+     * caches, so the caches are switched off from here on.
+     */
+    public List<DcMotorEx> getRawDriveMotors() {
+        leftFrontOut.bypass();
+        leftBackOut.bypass();
+        rightBackOut.bypass();
+        rightFrontOut.bypass();
+        return Arrays.asList(leftFront, leftBack, rightBack, rightFront);
+    }
+
+    /**
+     * Stops the background workers (voltage, color sensor, odometry thread). Call this when the
+     * OpMode ends rather than waiting for their idle timeouts.
+     */
+    public void close() {
+        voltageService.close();
+        paddle1Poller.close();
+        if (localizer instanceof PeriodicWorker) {
+            ((PeriodicWorker) localizer).close();
+        }
+    }
+
+    /**
+     * Returns how many motor and servo writes were dropped by the write cache so far.
+     */
+    public long getSkippedWrites() {
+        return leftFrontOut.getSkippedWrites() + leftBackOut.getSkippedWrites()
+                + rightBackOut.getSkippedWrites() + rightFrontOut.getSkippedWrites()
+                + intake.getSkippedWrites() + launcher.getSkippedWrites()
+                + paddleOne.getSkippedWrites();
     }
 
     public final class FollowTrajectoryAction implements Action {
@@ -311,66 +611,14 @@ public final class MecanumDrive {
             }
 
             if (t >= timeTrajectory.duration) {
-                leftFront.setPower(0);
-                leftBack.setPower(0);
-                rightBack.setPower(0);
-                rightFront.setPower(0);
+                endDriveAction();
 
                 return false;
             }
 
-            Pose2dDual<Time> txWorldTarget = timeTrajectory.get(t);
-            targetPoseWriter.write(new PoseMessage(txWorldTarget.value()));
-
-            PoseVelocity2d robotVelRobot = updatePoseEstimate();
-
-            PoseVelocity2dDual<Time> command = new HolonomicController(
-                    PARAMS.axialGain, PARAMS.lateralGain, PARAMS.headingGain,
-                    PARAMS.axialVelGain, PARAMS.lateralVelGain, PARAMS.headingVelGain
-            )
-                    .compute(txWorldTarget, localizer.getPose(), robotVelRobot);
-            driveCommandWriter.write(new DriveCommandMessage(command));
-
-            MecanumKinematics.WheelVelocities<Time> wheelVels = kinematics.inverse(command);
-            double voltage = voltageSensor.getVoltage();
-
-            final MotorFeedforward feedforward = new MotorFeedforward(PARAMS.kS,
-                    PARAMS.kV / PARAMS.inPerTick, PARAMS.kA / PARAMS.inPerTick);
-            double leftFrontPower = feedforward.compute(wheelVels.leftFront) / voltage;
-            double leftBackPower = feedforward.compute(wheelVels.leftBack) / voltage;
-            double rightBackPower = feedforward.compute(wheelVels.rightBack) / voltage;
-            double rightFrontPower = feedforward.compute(wheelVels.rightFront) / voltage;
-            mecanumCommandWriter.write(new MecanumCommandMessage(
-                    voltage, leftFrontPower, leftBackPower, rightBackPower, rightFrontPower
-            ));
-
-            leftFront.setPower(leftFrontPower);
-            leftBack.setPower(leftBackPower);
-            rightBack.setPower(rightBackPower);
-            rightFront.setPower(rightFrontPower);
-
-            p.put("x", localizer.getPose().position.x);
-            p.put("y", localizer.getPose().position.y);
-            p.put("heading (deg)", Math.toDegrees(localizer.getPose().heading.toDouble()));
-
-            Pose2d error = txWorldTarget.value().minusExp(localizer.getPose());
-            p.put("xError", error.position.x);
-            p.put("yError", error.position.y);
-            p.put("headingError (deg)", Math.toDegrees(error.heading.toDouble()));
-
-            // only draw when active; only one drive action should be active at a time
-            Canvas c = p.fieldOverlay();
-            drawPoseHistory(c);
-
-            c.setStroke("#4CAF50");
-            Drawing.drawRobot(c, txWorldTarget.value());
-
-            c.setStroke("#3F51B5");
-            Drawing.drawRobot(c, localizer.getPose());
-
-            c.setStroke("#4CAF50FF");
-            c.setStrokeWidth(1);
-            c.strokePolyline(xPoints, yPoints);
+            // RoadRunner's evaluation allocates its Pose2dDual; see the note on target
+            target.set(timeTrajectory.get(t));
+            followTarget(p);
 
             return true;
         }
@@ -403,109 +651,321 @@ public final class MecanumDrive {
             }
 
             if (t >= turn.duration) {
-                leftFront.setPower(0);
-                leftBack.setPower(0);
-                rightBack.setPower(0);
-                rightFront.setPower(0);
+                endDriveAction();
 
                 return false;
             }
 
-            Pose2dDual<Time> txWorldTarget = turn.get(t);
-            targetPoseWriter.write(new PoseMessage(txWorldTarget.value()));
+            // RoadRunner's evaluation allocates its Pose2dDual; see the note on target
+            target.set(turn.get(t));
 
             PoseVelocity2d robotVelRobot = updatePoseEstimate();
 
-            PoseVelocity2dDual<Time> command = new HolonomicController(
-                    PARAMS.axialGain, PARAMS.lateralGain, PARAMS.headingGain,
-                    PARAMS.axialVelGain, PARAMS.lateralVelGain, PARAMS.headingVelGain
-            )
-                    .compute(txWorldTarget, localizer.getPose(), robotVelRobot);
-            driveCommandWriter.write(new DriveCommandMessage(command));
-
-            MecanumKinematics.WheelVelocities<Time> wheelVels = kinematics.inverse(command);
-            double voltage = voltageSensor.getVoltage();
-            final MotorFeedforward feedforward = new MotorFeedforward(PARAMS.kS,
-                    PARAMS.kV / PARAMS.inPerTick, PARAMS.kA / PARAMS.inPerTick);
-            double leftFrontPower = feedforward.compute(wheelVels.leftFront) / voltage;
-            double leftBackPower = feedforward.compute(wheelVels.leftBack) / voltage;
-            double rightBackPower = feedforward.compute(wheelVels.rightBack) / voltage;
-            double rightFrontPower = feedforward.compute(wheelVels.rightFront) / voltage;
-            mecanumCommandWriter.write(new MecanumCommandMessage(
-                    voltage, leftFrontPower, leftBackPower, rightBackPower, rightFrontPower
-            ));
+            driveToTarget(robotVelRobot);
 
-            leftFront.setPower(feedforward.compute(wheelVels.leftFront) / voltage);
-            leftBack.setPower(feedforward.compute(wheelVels.leftBack) / voltage);
-            rightBack.setPower(feedforward.compute(wheelVels.rightBack) / voltage);
-            rightFront.setPower(feedforward.compute(wheelVels.rightFront) / voltage);
+            if (renderer.shouldRender(p)) {
+                Canvas c = p.fieldOverlay();
+                drawPoseHistory(c);
 
-            Canvas c = p.fieldOverlay();
-            drawPoseHistory(c);
+                c.setStroke("#4CAF50");
+                Drawing.drawRobot(c, target.x, target.y, target.heading);
 
-            c.setStroke("#4CAF50");
-            Drawing.drawRobot(c, txWorldTarget.value());
+                c.setStroke("#3F51B5");
+                Drawing.drawRobot(c, localizer.getPose());
+            }
 
-            c.setStroke("#3F51B5");
-            Drawing.drawRobot(c, localizer.getPose());
+            return true;
+        }
 
+        @Override
+        public void preview(Canvas c) {
             c.setStroke("#7C4DFFFF");
             c.fillCircle(turn.beginPose.position.x, turn.beginPose.position.y, 2);
+        }
+    }
+
+    /**
+     * Follows a sampled trajectory or turn (see TrajectorySamples), e.g. one loaded from
+     * TrajectoryCache, without evaluating any RoadRunner trajectory while running.
+     */
+    public final class FollowSamplesAction implements Action {
+        public final TrajectorySamples samples;
+        private double beginTs = -1;
+
+        private final double[] xPoints, yPoints;
+
+        public FollowSamplesAction(TrajectorySamples samples) {
+            this.samples = samples;
+
+            // about one preview point every 0.1 s, plus the end
+            int step = Math.max(1, (int) Math.round(0.1 / samples.dt));
+            int n = (samples.count - 1) / step + 2;
+            xPoints = new double[n];
+            yPoints = new double[n];
+            for (int i = 0; i < n - 1; i++) {
+                xPoints[i] = samples.x(i * step);
+                yPoints[i] = samples.y(i * step);
+            }
+            xPoints[n - 1] = samples.x(samples.count - 1);
+            yPoints[n - 1] = samples.y(samples.count - 1);
+        }
+
+        @Override
+        public boolean run(@NonNull TelemetryPacket p) {
+            double t;
+            if (beginTs < 0) {
+                beginTs = Actions.now();
+                t = 0;
+            } else {
+                t = Actions.now() - beginTs;
+            }
+
+            if (t >= samples.duration) {
+                endDriveAction();
+
+                return false;
+            }
+
+            samples.get(t, target);
+            followTarget(p);
 
             return true;
         }
 
         @Override
         public void preview(Canvas c) {
-            c.setStroke("#7C4DFF7A");
-            c.fillCircle(turn.beginPose.position.x, turn.beginPose.position.y, 2);
+            if (samples.turn) {
+                c.setStroke("#7C4DFFFF");
+                c.fillCircle(xPoints[0], yPoints[0], 2);
+            } else {
+                c.setStroke("#4CAF507A");
+                c.setStrokeWidth(1);
+                c.strokePolyline(xPoints, yPoints);
+            }
+        }
+    }
+
+    /**
+     * One tick of following {@link #target}, shared by the follow actions: localizes, drives,
+     * reports the errors and, on render frames, draws the robot and the target. The path is
+     * static and comes from the action's preview().
+     */
+    private void followTarget(TelemetryPacket p) {
+        PoseVelocity2d robotVelRobot = updatePoseEstimate();
+
+        driveToTarget(robotVelRobot);
+
+        Pose2d pose = localizer.getPose();
+        p.put("x", pose.position.x);
+        p.put("y", pose.position.y);
+        p.put("heading (deg)", Math.toDegrees(pose.heading.toDouble()));
+
+        p.put("xError", controller.xError);
+        p.put("yError", controller.yError);
+        p.put("headingError (deg)", Math.toDegrees(controller.headingError));
+
+        // only draw when active; only one drive action should be active at a time
+        if (renderer.shouldRender(p)) {
+            Canvas c = p.fieldOverlay();
+            drawPoseHistory(c);
+
+            c.setStroke("#4CAF50");
+            Drawing.drawRobot(c, target.x, target.y, target.heading);
+
+            c.setStroke("#3F51B5");
+            Drawing.drawRobot(c, pose);
+        }
+    }
+
+    /**
+     * Computes and writes wheel powers that track {@link #target} (see TrackingController).
+     */
+    private void driveToTarget(PoseVelocity2d robotVelRobot) {
+        // a drive action took over, so a chain's pending stop no longer applies
+        stopPending = false;
+
+        Pose2d actual = localizer.getPose();
+        double voltage = voltageService.getVoltage();
+        controller.update(target,
+                actual.position.x, actual.position.y, actual.heading.real, actual.heading.imag,
+                robotVelRobot.linearVel.x, robotVelRobot.linearVel.y, robotVelRobot.angVel,
+                voltage);
+
+        setWheelPowers(controller.leftFrontPower, controller.leftBackPower,
+                controller.rightBackPower, controller.rightFrontPower);
+
+        // only build log messages when the downsampled writers would take them
+        long now = System.nanoTime();
+        if (now - lastLogTs >= 50_000_000) {
+            lastLogTs = now;
+            targetPoseWriter.write(new PoseMessage(target.x, target.y, target.heading));
+            driveCommandWriter.write(new DriveCommandMessage(
+                    controller.cmdX, controller.accX, controller.cmdY, controller.accY,
+                    controller.cmdAng, controller.alpha));
+            mecanumCommandWriter.write(new MecanumCommandMessage(
+                    voltage, controller.leftFrontPower, controller.leftBackPower,
+                    controller.rightBackPower, controller.rightFrontPower
+            ));
         }
     }
 
     public PoseVelocity2d updatePoseEstimate() {
         PoseVelocity2d vel = localizer.update();
-        poseHistory.add(localizer.getPose());
-        
-        while (poseHistory.size() > 100) {
-            poseHistory.removeFirst();
+        long now = System.nanoTime();
+        if (localizer instanceof OdometryService) {
+            // stamp each estimate with when the thread made it, not when this loop picked it up,
+            // and record it once however many loops see it
+            ((OdometryService) localizer).read(odometryEstimate);
+            if (odometryEstimate.sequence != lastHistorySequence) {
+                lastHistorySequence = odometryEstimate.sequence;
+                poseHistory.add(odometryEstimate.x, odometryEstimate.y, odometryEstimate.heading,
+                        odometryEstimate.timestampNanos);
+            }
+        } else {
+            poseHistory.add(localizer.getPose(), now);
         }
 
-        estimatedPoseWriter.write(new PoseMessage(localizer.getPose()));
+        if (now - lastPoseLogTs >= 50_000_000) {
+            lastPoseLogTs = now;
+            estimatedPoseWriter.write(new PoseMessage(localizer.getPose()));
+        }
         
         
         return vel;
     }
 
-    private void drawPoseHistory(Canvas c) {
-        double[] xPoints = new double[poseHistory.size()];
-        double[] yPoints = new double[poseHistory.size()];
-
-        int i = 0;
-        for (Pose2d t : poseHistory) {
-            xPoints[i] = t.position.x;
-            yPoints[i] = t.position.y;
-
-            i++;
-        }
+    /**
+     * Returns where the robot was at the given System.nanoTime(), interpolated from the pose
+     * history, for fusing measurements that arrive late (camera frames, slow I2C sensors).
+     * The history covers the last poseHistoryCapacity updates; older times clamp to the oldest.
+     */
+    public Pose2d poseAt(long nanoTime) {
+        Pose2d pose = poseHistory.poseAt(nanoTime);
+        return pose == null ? localizer.getPose() : pose;
+    }
 
+    private void drawPoseHistory(Canvas c) {
         c.setStrokeWidth(1);
         c.setStroke("#3F51B5");
-        c.strokePolyline(xPoints, yPoints);
+        poseHistory.strokePolyline(c);
     }
 
     public TrajectoryActionBuilder actionBuilder(Pose2d beginPose) {
+        return actionBuilder(beginPose, 0.0);
+    }
+
+    /**
+     * Builds trajectories that begin and end at beginEndVel (in/s) instead of at rest; under
+     * {@link #chain(Action)} they run into each other without slowing down at the joins.
+     * RoadRunner's builder takes a single velocity, used for both the start of the first
+     * segment and the end of the last, so to start moving but end at rest (or the reverse)
+     * build the final (or first) segment separately with actionBuilder(pose).
+     */
+    public TrajectoryActionBuilder actionBuilder(Pose2d beginPose, double beginEndVel) {
+        double scale = getConstraintScale();
+        if (PARAMS.useSampleTables) {
+            return actionBuilder(beginPose, beginEndVel, scale,
+                    turn -> new FollowSamplesAction(TrajectorySamples.of(turn, PARAMS.sampleDt)),
+                    trajectory -> new FollowSamplesAction(TrajectorySamples.of(trajectory, PARAMS.sampleDt)));
+        }
+        return actionBuilder(beginPose, beginEndVel, scale, TurnAction::new, FollowTrajectoryAction::new);
+    }
+
+    /**
+     * constraintScale multiplies maxWheelVel and the path and turn acceleration limits
+     * (see {@link #getConstraintScale()}); 1 uses the default constraints.
+     */
+    public TrajectoryActionBuilder actionBuilder(Pose2d beginPose, double beginEndVel, double constraintScale,
+                                                 TurnActionFactory turnActionFactory,
+                                                 TrajectoryActionFactory trajectoryActionFactory) {
+        boolean scaled = constraintScale != 1;
         return new TrajectoryActionBuilder(
-                TurnAction::new,
-                FollowTrajectoryAction::new,
+                turnActionFactory,
+                trajectoryActionFactory,
                 new TrajectoryBuilderParams(
                         1e-6,
                         new ProfileParams(
                                 0.25, 0.1, 1e-2
                         )
                 ),
-                beginPose, 0.0,
-                defaultTurnConstraints,
-                defaultVelConstraint, defaultAccelConstraint
+                beginPose, beginEndVel,
+                scaled ? turnConstraints(constraintScale) : defaultTurnConstraints,
+                scaled ? velConstraint(constraintScale) : defaultVelConstraint,
+                scaled ? accelConstraint(constraintScale) : defaultAccelConstraint
         );
     }
+
+    /**
+     * Returns how much faster than the PARAMS limits the battery allows right now, from the
+     * filtered voltage (see {@link #constraintScale(double)}). 1 when voltageScaledConstraints is
+     * off or kV isn't tuned yet.
+     */
+    public double getConstraintScale() {
+        if (!PARAMS.voltageScaledConstraints || PARAMS.kV <= 0 || PARAMS.maxWheelVel <= 0) {
+            return 1;
+        }
+        return constraintScale(voltageService.getVoltage());
+    }
+
+    /**
+     * The largest scale s, a multiple of constraintScaleStep and at most maxConstraintScale, for
+     * which the feedforward at s * maxWheelVel and s * maxProfileAccel together fits in
+     * voltage - voltageSag. Logs a warning below lowConstraintScale but still returns s, since
+     * anything higher saturates the motors. A voltage that can't even cover kS + voltageSag is
+     * taken as a bad reading: that is logged and the tuned limits (1) are used.
+     */
+    static double constraintScale(double voltage) {
+        // feedforward gains per inch, in volts per in/s and per in/s^2
+        double kV = PARAMS.kV / PARAMS.inPerTick, kA = PARAMS.kA / PARAMS.inPerTick;
+        double available = voltage - PARAMS.voltageSag - PARAMS.kS;
+        double scale = available / (kV * PARAMS.maxWheelVel + kA * Math.max(PARAMS.maxProfileAccel, 0));
+        if (!(scale > 0)) {
+            RobotLog.ww(TAG, "battery at %.2f V can't cover kS and voltageSag; using the tuned limits", voltage);
+            return 1;
+        }
+
+        scale = Math.min(PARAMS.maxConstraintScale, scale);
+        if (PARAMS.constraintScaleStep > 0) {
+            // round down, so the quantized limits still fit (a scale under one step stays as is)
+            double quantized = Math.floor(scale / PARAMS.constraintScaleStep + 1e-9) * PARAMS.constraintScaleStep;
+            if (quantized > 0) {
+                scale = quantized;
+            }
+        }
+        if (scale < PARAMS.lowConstraintScale) {
+            RobotLog.ww(TAG, "battery at %.2f V only drives %.2f of the tuned limits", voltage, scale);
+        }
+        return scale;
+    }
+
+    // wheel-limited quantities scale with the battery; maxAngVel is a chosen cap and stays
+    private VelConstraint velConstraint(double scale) {
+        return new MinVelConstraint(Arrays.asList(
+                kinematics.new WheelVelConstraint(PARAMS.maxWheelVel * scale),
+                new AngularVelConstraint(PARAMS.maxAngVel)
+        ));
+    }
+
+    private AccelConstraint accelConstraint(double scale) {
+        return new ProfileAccelConstraint(PARAMS.minProfileAccel * scale, PARAMS.maxProfileAccel * scale);
+    }
+
+    private TurnConstraints turnConstraints(double scale) {
+        return new TurnConstraints(PARAMS.maxAngVel, -PARAMS.maxAngAccel * scale, PARAMS.maxAngAccel * scale);
+    }
+
+    /**
+     * Like actionBuilder, but the result is built through TrajectoryCache: later inits with the
+     * same calls and PARAMS load the samples from storage instead of building.
+     */
+    public CachedActionBuilder cachedActionBuilder(Pose2d beginPose) {
+        return cachedActionBuilder(beginPose, 0.0);
+    }
+
+    /**
+     * Cached counterpart of {@link #actionBuilder(Pose2d, double)}; beginEndVel is part of the key.
+     */
+    public CachedActionBuilder cachedActionBuilder(Pose2d beginPose, double beginEndVel) {
+        return new CachedActionBuilder(this, beginPose, beginEndVel);
+    }
 }
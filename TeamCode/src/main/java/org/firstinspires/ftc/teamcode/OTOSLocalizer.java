@@ -3,7 +3,6 @@ package org.firstinspires.ftc.teamcode;
 import com.acmerobotics.dashboard.config.Config;
 import com.acmerobotics.roadrunner.Pose2d;
 import com.acmerobotics.roadrunner.PoseVelocity2d;
-import com.acmerobotics.roadrunner.Rotation2d;
 import com.acmerobotics.roadrunner.Vector2d;
 import com.acmerobotics.roadrunner.ftc.OTOSKt;
 import com.qualcomm.hardware.sparkfun.SparkFunOTOS;
@@ -24,9 +23,26 @@ public class OTOSLocalizer implements Localizer {
 
     public static Params PARAMS = new Params();
 
+    // status (0x1F) is directly followed by position (0x20) and velocity (0x26), each x, y, h as
+    // little-endian int16, so one 13-byte read covers everything update() needs
+    private static final int REG_STATUS = 0x1F;
+    private static final int BURST_BYTES = 13;
+
+    private static final int STATUS_ERROR_PAA = 1 << 6;
+    private static final int STATUS_ERROR_LSM = 1 << 7;
+
+    // raw int16 to inches / radians (per second), from SparkFunOTOS
+    private static final double INCH_PER_METER = 1 / 0.0254;
+    private static final double POS_TO_IN = 10.0 / 32768 * INCH_PER_METER;
+    private static final double HEADING_TO_RAD = Math.PI / 32768;
+    private static final double VEL_TO_IN = 5.0 / 32768 * INCH_PER_METER;
+    private static final double ANG_VEL_TO_RAD = Math.toRadians(2000) / 32768;
+
     public final SparkFunOTOS otos;
     private Pose2d currentPose;
 
+    private int lastStatus;
+
     public OTOSLocalizer(HardwareMap hardwareMap, Pose2d initialPose) {
         // TODO: make sure your config has an OTOS device with this name
         //   see https://ftc-docs.firstinspires.org/en/latest/hardware_and_software_configuration/configuring/index.html
@@ -55,14 +71,36 @@ public class OTOSLocalizer implements Localizer {
 
     @Override
     public PoseVelocity2d update() {
-        SparkFunOTOS.Pose2D otosPose = new SparkFunOTOS.Pose2D();
-        SparkFunOTOS.Pose2D otosVel = new SparkFunOTOS.Pose2D();
-        SparkFunOTOS.Pose2D otosAcc = new SparkFunOTOS.Pose2D();
-        otos.getPosVelAcc(otosPose, otosVel, otosAcc);
-
-        currentPose = OTOSKt.toRRPose(otosPose);
-        Vector2d fieldVel = new Vector2d(otosVel.x, otosVel.y);
-        Vector2d robotVel = Rotation2d.exp(otosPose.h).inverse().times(fieldVel);
-        return new PoseVelocity2d(robotVel, otosVel.h);
+        // one transaction instead of getPosVelAcc's 18 bytes, which included the unused acceleration
+        byte[] b = otos.getDeviceClient().read(REG_STATUS, BURST_BYTES);
+        lastStatus = b[0] & 0xFF;
+
+        double h = int16(b, 5) * HEADING_TO_RAD;
+        currentPose = new Pose2d(int16(b, 1) * POS_TO_IN, int16(b, 3) * POS_TO_IN, h);
+
+        // the OTOS reports velocity in the field frame; rotate it into the robot frame
+        double vx = int16(b, 7) * VEL_TO_IN, vy = int16(b, 9) * VEL_TO_IN;
+        double c = Math.cos(h), s = Math.sin(h);
+        return new PoseVelocity2d(new Vector2d(c * vx + s * vy, -s * vx + c * vy),
+                int16(b, 11) * ANG_VEL_TO_RAD);
+    }
+
+    private static int int16(byte[] b, int i) {
+        return (short) ((b[i + 1] << 8) | (b[i] & 0xFF));
+    }
+
+    /**
+     * Returns the status register from the last update.
+     */
+    public int getStatus() {
+        return lastStatus;
+    }
+
+    /**
+     * False once the last status reported an optical (PAA) or IMU (LSM) sensor error.
+     */
+    @Override
+    public boolean isHealthy() {
+        return (lastStatus & (STATUS_ERROR_PAA | STATUS_ERROR_LSM)) == 0;
     }
 }
@@ -0,0 +1,193 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+import com.acmerobotics.roadrunner.Vector2d;
+
+/**
+ * Runs a localizer on its own fixed-rate thread and publishes each estimate through a
+ * lock-free double buffer, so readers always get a consistent pose/velocity pair no matter
+ * how long their own loop takes.
+ * <p>
+ * As a {@link Localizer} it is a drop-in wrapper: {@link #update()} no longer integrates
+ * anything, it just returns the latest published velocity. Only the worker thread (and
+ * {@link #setPose(Pose2d)}, under the same lock) ever touches the wrapped localizer.
+ */
+@Config
+public final class OdometryService extends PeriodicWorker implements Localizer {
+    public static class Params {
+        public double periodMs = 5;
+        // stop once nothing has read the pose for this long, so a drive nobody closed (the
+        // RoadRunner tuning OpModes build theirs outside our reach) doesn't keep bulk reading
+        // into the next OpMode; updatePoseEstimate() touches it every loop and restarts it.
+        // While stopped the bulk read is released, so the hubs go back to AUTO
+        public double idleTimeoutMs = 500;
+    }
+
+    public static Params PARAMS = new Params();
+
+    /**
+     * Caller-owned copy of one published estimate. Velocity is in the robot frame.
+     */
+    public static final class Estimate {
+        public double x, y, heading;
+        public double vx, vy, omega;
+        public long timestampNanos;
+        public long sequence;
+    }
+
+    // volatile fields keep the copy ordered between the two seq reads
+    private static final class Slot {
+        volatile long seq; // odd while being written
+        volatile double x, y, heading, vx, vy, omega;
+        volatile long timestampNanos, sequence;
+    }
+
+    public final Localizer localizer;
+    private final BulkReadManager bulkReads;
+
+    private final Slot[] slots = { new Slot(), new Slot() };
+    private volatile int published;
+    private long sequence;
+
+    private final Object lock = new Object();
+    private final Estimate scratch = new Estimate();
+
+    /**
+     * @param bulkReads claimed by this service while its thread runs and refreshed before every
+     *                  update, so the thread never reads stale encoders and the OpMode loop stops
+     *                  issuing its own bulk reads; may be null
+     */
+    public OdometryService(Localizer localizer, BulkReadManager bulkReads) {
+        super("odometry", msToNanos(PARAMS.periodMs), msToNanos(PARAMS.idleTimeoutMs));
+        this.localizer = localizer;
+        this.bulkReads = bulkReads;
+
+        Pose2d pose = localizer.getPose();
+        publish(pose.position.x, pose.position.y, pose.heading.toDouble(), 0, 0, 0);
+
+        // claim the bulk read now, ahead of the OpMode loop; if nothing reads the pose, the idle
+        // timeout releases it again
+        start();
+    }
+
+    /**
+     * Takes the bulk read back and brings the estimate up to date before the thread starts, so
+     * the read that restarts the service after an idle timeout doesn't get the pre-idle pose.
+     */
+    @Override
+    protected void onStart() {
+        if (bulkReads != null) {
+            bulkReads.claim(this);
+        }
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            // the thread's own ticks report failures
+        }
+    }
+
+    /**
+     * Lets the hubs refresh themselves again while nobody drives the bulk read.
+     */
+    @Override
+    protected void onStop() {
+        if (bulkReads != null) {
+            bulkReads.release(this);
+        }
+    }
+
+    @Override
+    protected void tick() {
+        synchronized (lock) {
+            if (bulkReads != null) {
+                bulkReads.beginCycle(this);
+            }
+            PoseVelocity2d vel = localizer.update();
+            Pose2d pose = localizer.getPose();
+            publish(pose.position.x, pose.position.y, pose.heading.toDouble(),
+                    vel.linearVel.x, vel.linearVel.y, vel.angVel);
+        }
+    }
+
+    // writers are serialized by lock (or the constructor), so only readers race
+    private void publish(double x, double y, double heading, double vx, double vy, double omega) {
+        Slot s = slots[published ^ 1];
+        s.seq++;
+        s.x = x;
+        s.y = y;
+        s.heading = heading;
+        s.vx = vx;
+        s.vy = vy;
+        s.omega = omega;
+        s.timestampNanos = System.nanoTime();
+        s.sequence = ++sequence;
+        s.seq++;
+
+        published ^= 1;
+    }
+
+    /**
+     * Copies the latest estimate into dst without locking or allocating.
+     */
+    public void read(Estimate dst) {
+        touch();
+
+        while (true) {
+            Slot s = slots[published];
+            long before = s.seq;
+            if ((before & 1) != 0) {
+                // the writer lapped us and is refilling this slot; the other one is fresh
+                continue;
+            }
+
+            dst.x = s.x;
+            dst.y = s.y;
+            dst.heading = s.heading;
+            dst.vx = s.vx;
+            dst.vy = s.vy;
+            dst.omega = s.omega;
+            dst.timestampNanos = s.timestampNanos;
+            dst.sequence = s.sequence;
+
+            if (s.seq == before) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void setPose(Pose2d pose) {
+        synchronized (lock) {
+            localizer.setPose(pose);
+            publish(pose.position.x, pose.position.y, pose.heading.toDouble(), 0, 0, 0);
+        }
+    }
+
+    @Override
+    public Pose2d getPose() {
+        synchronized (scratch) {
+            read(scratch);
+            return new Pose2d(scratch.x, scratch.y, scratch.heading);
+        }
+    }
+
+    /**
+     * Keeps the thread alive and returns the latest published velocity.
+     */
+    @Override
+    public PoseVelocity2d update() {
+        synchronized (scratch) {
+            read(scratch);
+            return new PoseVelocity2d(new Vector2d(scratch.vx, scratch.vy), scratch.omega);
+        }
+    }
+
+    /**
+     * Returns how many estimates have been published.
+     */
+    public long getSequence() {
+        return slots[published].sequence;
+    }
+}
@@ -9,7 +9,6 @@ import com.acmerobotics.roadrunner.ParallelAction;
 import com.acmerobotics.roadrunner.Pose2d;
 import com.acmerobotics.roadrunner.SequentialAction;
 import com.acmerobotics.roadrunner.Vector2d;
-import com.acmerobotics.roadrunner.ftc.Actions;
 import com.qualcomm.robotcore.eventloop.opmode.Autonomous;
 import com.qualcomm.robotcore.eventloop.opmode.Disabled;
 import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
@@ -308,22 +307,25 @@ public class Old_BlueAuto extends LinearOpMode {
                 .build();
 
         waitForStart();
-        if (isStopRequested()) return;
-        Actions.runBlocking(
+        if (isStopRequested()) {
+            drive.close();
+            return;
+        }
+        drive.renderer.runBlocking(
                 new SequentialAction(
                         lift.liftInit(),
                         moveToPreload,
                         lift.liftUp()
                 )
         );
-        Actions.runBlocking(
+        drive.renderer.runBlocking(
                 new ParallelAction(
                         lift.liftDownFinal(),
                         moveRight
                         //scorePreload
                 )
         );
-        Actions.runBlocking(
+        drive.renderer.runBlocking(
                 new SequentialAction(
                         //moveForward,
                         //moveRight,
@@ -338,14 +340,14 @@ public class Old_BlueAuto extends LinearOpMode {
                         lift.liftUp()
                 )
         );
-        Actions.runBlocking(
+        drive.renderer.runBlocking(
                 new ParallelAction(
                         lift.liftDownFinal(),
                         intakeBar.barPickup(),
                         getSpecimen2
                 )
         );
-        Actions.runBlocking(
+        drive.renderer.runBlocking(
                 new SequentialAction(
                         //lift.liftUpPartial(),
                         intakeBar.barScore(),
@@ -353,14 +355,14 @@ public class Old_BlueAuto extends LinearOpMode {
                         lift.liftUp()
                 )
         );
-        Actions.runBlocking(
+        drive.renderer.runBlocking(
                 new ParallelAction(
                         lift.liftDownFinal(),
                         intakeBar.barPickup(),
                         getSpecimen3
                 )
         );
-        Actions.runBlocking(
+        drive.renderer.runBlocking(
                 new SequentialAction(
                         //lift.liftUpPartial(),
                         intakeBar.barScore(),
@@ -371,5 +373,6 @@ public class Old_BlueAuto extends LinearOpMode {
                         //trajectory3
                 )
         );
+        drive.close();
     }
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.util.RobotLog;
+
+/**
+ * Runs {@link #tick()} on a daemon thread at a fixed period.
+ * The thread starts on {@link #start()} or the first {@link #touch()}, and stops on
+ * {@link #close()} or once nobody has touched the worker for the idle timeout,
+ * so a worker nobody closed can't keep running long after its OpMode ends. A closed worker
+ * stays stopped; touches after close() only return the last result.
+ * A tick that throws is logged and counted, and the worker keeps going.
+ */
+public abstract class PeriodicWorker implements AutoCloseable {
+    private final String name;
+    private final long periodNanos, idleTimeoutNanos;
+
+    private volatile boolean running, closed;
+    private volatile long lastTouchNanos;
+    private volatile long failures;
+    private Thread thread;
+
+    /**
+     * @param idleTimeoutNanos stop after this long without a touch; zero or less never times out
+     */
+    protected PeriodicWorker(String name, long periodNanos, long idleTimeoutNanos) {
+        this.name = name;
+        this.periodNanos = periodNanos;
+        this.idleTimeoutNanos = idleTimeoutNanos;
+    }
+
+    /**
+     * Does one unit of background work. Runs on the worker thread only.
+     */
+    protected abstract void tick();
+
+    /**
+     * Runs on the starting thread just before the worker thread starts, including restarts after
+     * an idle timeout.
+     */
+    protected void onStart() {
+    }
+
+    /**
+     * Runs once the worker has stopped, after an idle timeout or {@link #close()}, on the worker
+     * thread (or in close() if it wasn't running).
+     */
+    protected void onStop() {
+    }
+
+    /**
+     * Marks the worker as in use and starts it if needed. Cheap enough to call every loop.
+     */
+    protected final void touch() {
+        lastTouchNanos = System.nanoTime();
+        if (!running && !closed) {
+            start();
+        }
+    }
+
+    public final synchronized void start() {
+        if (running || closed) {
+            return;
+        }
+
+        lastTouchNanos = System.nanoTime();
+        running = true;
+        onStart();
+        thread = new Thread(this::loop, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public final boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Returns how many ticks have thrown so far.
+     */
+    public final long getFailures() {
+        return failures;
+    }
+
+    @Override
+    public final synchronized void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        if (thread != null) {
+            // the thread calls onStop() on its way out
+            thread.interrupt();
+            thread = null;
+        } else {
+            onStop();
+        }
+        running = false;
+    }
+
+    private void loop() {
+        Thread self = Thread.currentThread();
+        try {
+            long next = System.nanoTime();
+            while (!self.isInterrupted()) {
+                if (idleTimeoutNanos > 0 && System.nanoTime() - lastTouchNanos > idleTimeoutNanos) {
+                    break;
+                }
+
+                try {
+                    tick();
+                } catch (RuntimeException e) {
+                    // log the first failure and then every 100th so a broken sensor can't flood the log
+                    if (failures++ % 100 == 0) {
+                        RobotLog.ww(name, e, "tick failed (%d so far)", failures);
+                    }
+                }
+
+                next += periodNanos;
+                long sleepNanos = next - System.nanoTime();
+                if (sleepNanos > 0) {
+                    Thread.sleep(sleepNanos / 1_000_000, (int) (sleepNanos % 1_000_000));
+                } else {
+                    // overran the period; don't try to catch up with a burst of ticks
+                    next = System.nanoTime();
+                }
+            }
+        } catch (InterruptedException ignored) {
+            // closed
+        } finally {
+            synchronized (this) {
+                // under the lock, so a restart's onStart() can't run before this onStop()
+                onStop();
+                if (thread == self) {
+                    thread = null;
+                    running = false;
+                }
+            }
+        }
+    }
+
+    protected static long msToNanos(double ms) {
+        return (long) (ms * 1e6);
+    }
+}
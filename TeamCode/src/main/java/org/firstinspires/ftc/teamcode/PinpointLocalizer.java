@@ -3,7 +3,6 @@ package org.firstinspires.ftc.teamcode;
 import com.acmerobotics.dashboard.config.Config;
 import com.acmerobotics.roadrunner.Pose2d;
 import com.acmerobotics.roadrunner.PoseVelocity2d;
-import com.acmerobotics.roadrunner.Rotation2d;
 import com.acmerobotics.roadrunner.Vector2d;
 import com.qualcomm.hardware.gobilda.GoBildaPinpointDriver;
 import com.qualcomm.robotcore.hardware.HardwareMap;
@@ -11,8 +10,6 @@ import com.qualcomm.robotcore.hardware.HardwareMap;
 import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
 import org.firstinspires.ftc.robotcore.external.navigation.UnnormalizedAngleUnit;
 
-import java.util.Objects;
-
 @Config
 public final class PinpointLocalizer implements Localizer {
     public static class Params {
@@ -25,8 +22,18 @@ public final class PinpointLocalizer implements Localizer {
     public final GoBildaPinpointDriver driver;
     public final GoBildaPinpointDriver.EncoderDirection initialParDirection, initialPerpDirection;
 
-    private Pose2d txWorldPinpoint;
-    private Pose2d txPinpointRobot = new Pose2d(0, 0, 0);
+    // the driver's bulk read (status, loop time, both encoders, position, velocity) is one
+    // 40-byte transaction; the Pinpoint has no narrower contiguous window to read instead
+    public static final int BYTES_PER_UPDATE = 40;
+
+    // txWorldPinpoint and txPinpointRobot as primitives (x, y in inches, heading in radians)
+    private double worldX, worldY, worldHeading;
+    private double pinpointX, pinpointY, pinpointHeading;
+    private Pose2d cachedPose;
+
+    private long reads, notReadyReads, readNanos, lastReadNanos, maxReadNanos;
+    private long firstReadStartNanos, lastReadEndNanos;
+    private boolean ready;
 
     public PinpointLocalizer(HardwareMap hardwareMap, double inPerTick, Pose2d initialPose) {
         // TODO: make sure your config has a Pinpoint device with this name
@@ -45,29 +52,111 @@ public final class PinpointLocalizer implements Localizer {
 
         driver.resetPosAndIMU();
 
-        txWorldPinpoint = initialPose;
+        setPose(initialPose);
     }
 
     @Override
     public void setPose(Pose2d pose) {
-        txWorldPinpoint = pose.times(txPinpointRobot.inverse());
+        // txWorldPinpoint = pose * txPinpointRobot^-1
+        double x = pose.position.x, y = pose.position.y;
+        worldHeading = pose.heading.toDouble() - pinpointHeading;
+        double c = Math.cos(worldHeading), s = Math.sin(worldHeading);
+        worldX = x - (c * pinpointX - s * pinpointY);
+        worldY = y - (s * pinpointX + c * pinpointY);
+        cachedPose = null;
     }
 
     @Override
     public Pose2d getPose() {
-        return txWorldPinpoint.times(txPinpointRobot);
+        if (cachedPose == null) {
+            // txWorldPinpoint * txPinpointRobot
+            double c = Math.cos(worldHeading), s = Math.sin(worldHeading);
+            cachedPose = new Pose2d(
+                    worldX + c * pinpointX - s * pinpointY,
+                    worldY + s * pinpointX + c * pinpointY,
+                    worldHeading + pinpointHeading);
+        }
+        return cachedPose;
     }
 
     @Override
     public PoseVelocity2d update() {
+        long start = System.nanoTime();
         driver.update();
-        if (Objects.requireNonNull(driver.getDeviceStatus()) == GoBildaPinpointDriver.DeviceStatus.READY) {
-            txPinpointRobot = new Pose2d(driver.getPosX(DistanceUnit.INCH), driver.getPosY(DistanceUnit.INCH), driver.getHeading(UnnormalizedAngleUnit.RADIANS));
-            Vector2d worldVelocity = new Vector2d(driver.getVelX(DistanceUnit.INCH), driver.getVelY(DistanceUnit.INCH));
-            Vector2d robotVelocity = Rotation2d.fromDouble(-txPinpointRobot.heading.log()).times(worldVelocity);
+        lastReadEndNanos = System.nanoTime();
+        lastReadNanos = lastReadEndNanos - start;
+        if (reads == 0) {
+            firstReadStartNanos = start;
+        }
+        readNanos += lastReadNanos;
+        maxReadNanos = Math.max(maxReadNanos, lastReadNanos);
+        reads++;
 
-            return new PoseVelocity2d(robotVelocity, driver.getHeadingVelocity(UnnormalizedAngleUnit.RADIANS));
+        ready = driver.getDeviceStatus() == GoBildaPinpointDriver.DeviceStatus.READY;
+        if (!ready) {
+            notReadyReads++;
+        }
+        if (ready) {
+            pinpointX = driver.getPosX(DistanceUnit.INCH);
+            pinpointY = driver.getPosY(DistanceUnit.INCH);
+            pinpointHeading = driver.getHeading(UnnormalizedAngleUnit.RADIANS);
+            cachedPose = null;
+
+            // the Pinpoint reports velocity in its own field frame; rotate it into the robot frame
+            double vx = driver.getVelX(DistanceUnit.INCH), vy = driver.getVelY(DistanceUnit.INCH);
+            double c = Math.cos(pinpointHeading), s = Math.sin(pinpointHeading);
+            return new PoseVelocity2d(new Vector2d(c * vx + s * vy, -s * vx + c * vy),
+                    driver.getHeadingVelocity(UnnormalizedAngleUnit.RADIANS));
         }
         return new PoseVelocity2d(new Vector2d(0, 0), 0);
     }
+
+    /**
+     * False when the last update found the Pinpoint in any state but READY; the pose is then stale.
+     */
+    @Override
+    public boolean isHealthy() {
+        return ready;
+    }
+
+    public double getLastReadMs() {
+        return lastReadNanos / 1e6;
+    }
+
+    public double getMeanReadMs() {
+        return reads == 0 ? 0 : readNanos / 1e6 / reads;
+    }
+
+    public double getMaxReadMs() {
+        return maxReadNanos / 1e6;
+    }
+
+    /**
+     * Number of driver.update() calls, i.e. bus transactions, since construction.
+     */
+    public long getReads() {
+        return reads;
+    }
+
+    /**
+     * Bytes moved over I2C by all reads so far, reads times BYTES_PER_UPDATE.
+     */
+    public long getBytesRead() {
+        return reads * BYTES_PER_UPDATE;
+    }
+
+    /**
+     * Mean I2C transfer rate from the start of the first read to the end of the last one.
+     */
+    public double getBytesPerSecond() {
+        long elapsed = lastReadEndNanos - firstReadStartNanos;
+        return reads == 0 || elapsed <= 0 ? 0 : getBytesRead() / (elapsed / 1e9);
+    }
+
+    /**
+     * Number of reads that found the Pinpoint not READY and so left the pose unchanged.
+     */
+    public long getNotReadyReads() {
+        return notReadyReads;
+    }
 }
@@ -0,0 +1,90 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.Rotation2d;
+import com.acmerobotics.roadrunner.Vector2d;
+
+/**
+ * Integrates odometry twists into a pose with plain doubles.
+ * {@link #plus(double, double, double)} performs the same floating point operations, in the
+ * same order, as RoadRunner's {@code pose.plus(new Twist2d(...))}, so the results match it
+ * bit for bit without allocating the intermediate Twist2d, Pose2d and Rotation2d objects.
+ * The Pose2d handed out by {@link #getPose()} is built lazily and cached until the next change.
+ */
+public final class PoseIntegrator {
+    // same guard as RoadRunner's Pose2d.exp
+    private static final double EPS = 2.2e-15;
+
+    // heading is kept as the unnormalized (real, imag) pair RoadRunner multiplies through
+    private double x, y, real, imag;
+    private Pose2d cached;
+
+    public PoseIntegrator(Pose2d pose) {
+        set(pose);
+    }
+
+    public void set(Pose2d pose) {
+        x = pose.position.x;
+        y = pose.position.y;
+        real = pose.heading.real;
+        imag = pose.heading.imag;
+        cached = pose;
+    }
+
+    /**
+     * Applies a robot-frame twist: pose = pose * exp(twist).
+     */
+    public void plus(double lineX, double lineY, double angle) {
+        // exp(twist)
+        double expReal = Math.cos(angle);
+        double expImag = Math.sin(angle);
+        double u = angle + (angle >= 0.0 ? EPS : -EPS);
+        double c = 1 - Math.cos(u);
+        double s = Math.sin(u);
+        double tx = (s * lineX - c * lineY) / u;
+        double ty = (c * lineX + s * lineY) / u;
+
+        // pose * exp(twist)
+        double nx = real * tx - imag * ty + x;
+        double ny = imag * tx + real * ty + y;
+        double nReal = real * expReal - imag * expImag;
+        double nImag = real * expImag + imag * expReal;
+
+        x = nx;
+        y = ny;
+        real = nReal;
+        imag = nImag;
+        cached = null;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getHeading() {
+        return Math.atan2(imag, real);
+    }
+
+    public Pose2d getPose() {
+        if (cached == null) {
+            cached = new Pose2d(new Vector2d(x, y), new Rotation2d(real, imag));
+        }
+        return cached;
+    }
+
+    /**
+     * Primitive MecanumKinematics.forward for one channel (increments or velocities):
+     * writes the robot-frame (x, y, angle) into out, with the same operation order.
+     */
+    public static void mecanumForward(double trackWidth, double lateralMultiplier,
+                                      double leftFront, double leftBack, double rightBack, double rightFront,
+                                      double[] out) {
+        out[0] = (leftFront + leftBack + rightBack + rightFront) * 0.25;
+        out[1] = (-leftFront + leftBack - rightBack + rightFront) * (0.25 / lateralMultiplier);
+        out[2] = (-leftFront - leftBack + rightBack + rightFront) * (0.25 / trackWidth);
+    }
+}
@@ -0,0 +1,199 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.dashboard.canvas.Canvas;
+import com.acmerobotics.roadrunner.Pose2d;
+
+/**
+ * Fixed-capacity pose history kept in parallel primitive arrays (x, y, heading, timestamp).
+ * Adding a pose never allocates; once full, the oldest entry is overwritten.
+ * Timestamps are expected to be added in non-decreasing order, which lets
+ * {@link #poseAt(long)} binary search them.
+ */
+public final class PoseRingBuffer {
+    private final double[] xs, ys, headings;
+    private final long[] timestamps;
+
+    private int head; // index of the oldest entry
+    private int size;
+
+    public PoseRingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+
+        xs = new double[capacity];
+        ys = new double[capacity];
+        headings = new double[capacity];
+        timestamps = new long[capacity];
+    }
+
+    public void add(Pose2d pose, long timestampNanos) {
+        add(pose.position.x, pose.position.y, pose.heading.toDouble(), timestampNanos);
+    }
+
+    public void add(double x, double y, double heading, long timestampNanos) {
+        int i;
+        if (size < xs.length) {
+            i = (head + size) % xs.length;
+            size++;
+        } else {
+            i = head;
+            head = (head + 1) % xs.length;
+        }
+
+        xs[i] = x;
+        ys[i] = y;
+        headings[i] = heading;
+        timestamps[i] = timestampNanos;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return xs.length;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private int index(int i) {
+        return (head + i) % xs.length;
+    }
+
+    /** Entries are indexed oldest (0) to newest (size - 1). */
+    public double getX(int i) {
+        return xs[index(i)];
+    }
+
+    public double getY(int i) {
+        return ys[index(i)];
+    }
+
+    public double getHeading(int i) {
+        return headings[index(i)];
+    }
+
+    public long getTimestamp(int i) {
+        return timestamps[index(i)];
+    }
+
+    /**
+     * Returns the pose at the given System.nanoTime(), interpolated along the SE(2) geodesic
+     * between the two entries around it, or null if the buffer is empty.
+     * Times outside the history clamp to the oldest or newest entry.
+     */
+    public Pose2d poseAt(long nanoTime) {
+        double[] out = new double[3];
+        if (!poseAt(nanoTime, out)) {
+            return null;
+        }
+        return new Pose2d(out[0], out[1], out[2]);
+    }
+
+    /**
+     * Allocation-free form of {@link #poseAt(long)}; writes x, y, heading into out.
+     * @return false if the buffer is empty
+     */
+    public boolean poseAt(long nanoTime, double[] out) {
+        if (size == 0) {
+            return false;
+        }
+
+        if (nanoTime <= getTimestamp(0)) {
+            copyEntry(index(0), out);
+            return true;
+        }
+        if (nanoTime >= getTimestamp(size - 1)) {
+            copyEntry(index(size - 1), out);
+            return true;
+        }
+
+        // largest lo with timestamp <= nanoTime; the clamps above guarantee lo < size - 1
+        int lo = 0, hi = size - 1;
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (getTimestamp(mid) <= nanoTime) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+
+        int i0 = index(lo), i1 = index(hi);
+        double s = (double) (nanoTime - timestamps[i0]) / (timestamps[i1] - timestamps[i0]);
+        interpolate(xs[i0], ys[i0], headings[i0], xs[i1], ys[i1], headings[i1], s, out);
+        return true;
+    }
+
+    private void copyEntry(int i, double[] out) {
+        out[0] = xs[i];
+        out[1] = ys[i];
+        out[2] = headings[i];
+    }
+
+    // same small-angle guard as RoadRunner's Pose2d.log/exp
+    private static final double EPS = 2.2e-15;
+
+    private static double snz(double x) {
+        return x >= 0 ? EPS : -EPS;
+    }
+
+    /**
+     * Writes p0 * exp(s * log(p0^-1 * p1)) into out, i.e. the constant-twist path from p0 to p1.
+     */
+    static void interpolate(double x0, double y0, double h0,
+                            double x1, double y1, double h1,
+                            double s, double[] out) {
+        double c0 = Math.cos(h0), s0 = Math.sin(h0);
+
+        // p1 relative to p0
+        double dx = x1 - x0, dy = y1 - y0;
+        double lx = c0 * dx + s0 * dy;
+        double ly = -s0 * dx + c0 * dy;
+        double dh = Math.atan2(Math.sin(h1 - h0), Math.cos(h1 - h0));
+
+        // log
+        double halfu = 0.5 * dh + snz(dh);
+        double v = halfu / Math.tan(halfu);
+        double tx = v * lx + halfu * ly;
+        double ty = -halfu * lx + v * ly;
+
+        // exp of the scaled twist
+        double angle = s * dh;
+        tx *= s;
+        ty *= s;
+        double u = angle + snz(angle);
+        double c = 1 - Math.cos(u);
+        double sn = Math.sin(u);
+        double ex = (sn * tx - c * ty) / u;
+        double ey = (c * tx + sn * ty) / u;
+
+        out[0] = x0 + c0 * ex - s0 * ey;
+        out[1] = y0 + s0 * ex + c0 * ey;
+        out[2] = h0 + angle;
+    }
+
+    /**
+     * Strokes the history oldest to newest.
+     * The canvas keeps the arrays it is given until the packet is serialized on the dashboard
+     * thread, so the export hands over a chronological copy made with two bulk array copies
+     * rather than the live ring storage.
+     */
+    public void strokePolyline(Canvas c) {
+        double[] xPoints = new double[size];
+        double[] yPoints = new double[size];
+        copyChronological(xs, xPoints);
+        copyChronological(ys, yPoints);
+        c.strokePolyline(xPoints, yPoints);
+    }
+
+    private void copyChronological(double[] src, double[] dst) {
+        int firstRun = Math.min(size, src.length - head);
+        System.arraycopy(src, head, dst, 0, firstRun);
+        System.arraycopy(src, 0, dst, firstRun, size - firstRun);
+    }
+}
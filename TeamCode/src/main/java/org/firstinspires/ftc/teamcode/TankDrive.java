@@ -56,7 +56,6 @@ import org.firstinspires.ftc.teamcode.messages.TankLocalizerInputsMessage;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 
 @Config
@@ -88,6 +87,9 @@ public final class TankDrive {
         public double maxAngVel = Math.PI; // shared with path
         public double maxAngAccel = Math.PI;
 
+        // number of poses kept for the dashboard trail
+        public int poseHistoryCapacity = 100;
+
         // path controller gains
         public double ramseteZeta = 0.7; // in the range (0, 1)
         public double ramseteBBar = 2.0; // positive
@@ -95,6 +97,9 @@ public final class TankDrive {
         // turn controller gains
         public double turnGain = 0.0;
         public double turnVelGain = 0.0;
+
+        // run the localizer on its own fixed-rate thread (see OdometryService)
+        public boolean useOdometryThread = false;
     }
 
     public static Params PARAMS = new Params();
@@ -116,9 +121,12 @@ public final class TankDrive {
     public final LazyImu lazyImu;
 
     public final VoltageSensor voltageSensor;
+    public final VoltageService voltageService;
+
+    public final FieldRenderer renderer = new FieldRenderer();
 
     public final Localizer localizer;
-    private final LinkedList<Pose2d> poseHistory = new LinkedList<>();
+    private final PoseRingBuffer poseHistory = new PoseRingBuffer(PARAMS.poseHistoryCapacity);
 
     private final DownsampledWriter estimatedPoseWriter = new DownsampledWriter("ESTIMATED_POSE", 50_000_000);
     private final DownsampledWriter targetPoseWriter = new DownsampledWriter("TARGET_POSE", 50_000_000);
@@ -255,12 +263,25 @@ public final class TankDrive {
                 PARAMS.logoFacingDirection, PARAMS.usbFacingDirection));
 
         voltageSensor = hardwareMap.voltageSensor.iterator().next();
+        voltageService = new VoltageService(voltageSensor);
 
-        localizer = new DriveLocalizer(pose);
+        Localizer odometry = new DriveLocalizer(pose);
+        localizer = PARAMS.useOdometryThread ? new OdometryService(odometry, null) : odometry;
 
         FlightRecorder.write("TANK_PARAMS", PARAMS);
     }
 
+    /**
+     * Stops the background workers (voltage, odometry thread). Call this when the OpMode ends
+     * rather than waiting for their idle timeouts.
+     */
+    public void close() {
+        voltageService.close();
+        if (localizer instanceof PeriodicWorker) {
+            ((PeriodicWorker) localizer).close();
+        }
+    }
+
     public void setDrivePowers(PoseVelocity2d powers) {
         TankKinematics.WheelVelocities<Time> wheelVels = new TankKinematics(2).inverse(
                 PoseVelocity2dDual.constant(powers, 1));
@@ -332,7 +353,7 @@ public final class TankDrive {
             driveCommandWriter.write(new DriveCommandMessage(command));
 
             TankKinematics.WheelVelocities<Time> wheelVels = kinematics.inverse(command);
-            double voltage = voltageSensor.getVoltage();
+            double voltage = voltageService.getVoltage();
             final MotorFeedforward feedforward = new MotorFeedforward(PARAMS.kS,
                     PARAMS.kV / PARAMS.inPerTick, PARAMS.kA / PARAMS.inPerTick);
             double leftPower = feedforward.compute(wheelVels.left) / voltage;
@@ -355,19 +376,18 @@ public final class TankDrive {
             p.put("yError", error.position.y);
             p.put("headingError (deg)", Math.toDegrees(error.heading.toDouble()));
 
-            // only draw when active; only one drive action should be active at a time
-            Canvas c = p.fieldOverlay();
-            drawPoseHistory(c);
+            // only draw when active; only one drive action should be active at a time.
+            // the path is static and comes from preview(), so render frames only redraw poses
+            if (renderer.shouldRender(p)) {
+                Canvas c = p.fieldOverlay();
+                drawPoseHistory(c);
 
-            c.setStroke("#4CAF50");
-            Drawing.drawRobot(c, txWorldTarget.value());
+                c.setStroke("#4CAF50");
+                Drawing.drawRobot(c, txWorldTarget.value());
 
-            c.setStroke("#3F51B5");
-            Drawing.drawRobot(c, localizer.getPose());
-
-            c.setStroke("#4CAF50FF");
-            c.setStrokeWidth(1);
-            c.strokePolyline(xPoints, yPoints);
+                c.setStroke("#3F51B5");
+                Drawing.drawRobot(c, localizer.getPose());
+            }
 
             return true;
         }
@@ -425,7 +445,7 @@ public final class TankDrive {
             driveCommandWriter.write(new DriveCommandMessage(command));
 
             TankKinematics.WheelVelocities<Time> wheelVels = kinematics.inverse(command);
-            double voltage = voltageSensor.getVoltage();
+            double voltage = voltageService.getVoltage();
             final MotorFeedforward feedforward = new MotorFeedforward(PARAMS.kS,
                     PARAMS.kV / PARAMS.inPerTick, PARAMS.kA / PARAMS.inPerTick);
             double leftPower = feedforward.compute(wheelVels.left) / voltage;
@@ -439,35 +459,30 @@ public final class TankDrive {
                 m.setPower(rightPower);
             }
 
-            Canvas c = p.fieldOverlay();
-            drawPoseHistory(c);
-
-            c.setStroke("#4CAF50");
-            Drawing.drawRobot(c, txWorldTarget.value());
+            if (renderer.shouldRender(p)) {
+                Canvas c = p.fieldOverlay();
+                drawPoseHistory(c);
 
-            c.setStroke("#3F51B5");
-            Drawing.drawRobot(c, localizer.getPose());
+                c.setStroke("#4CAF50");
+                Drawing.drawRobot(c, txWorldTarget.value());
 
-            c.setStroke("#7C4DFFFF");
-            c.fillCircle(turn.beginPose.position.x, turn.beginPose.position.y, 2);
+                c.setStroke("#3F51B5");
+                Drawing.drawRobot(c, localizer.getPose());
+            }
 
             return true;
         }
 
         @Override
         public void preview(Canvas c) {
-            c.setStroke("#7C4DFF7A");
+            c.setStroke("#7C4DFFFF");
             c.fillCircle(turn.beginPose.position.x, turn.beginPose.position.y, 2);
         }
     }
 
     public PoseVelocity2d updatePoseEstimate() {
         PoseVelocity2d vel = localizer.update();
-        poseHistory.add(localizer.getPose());
-
-        while (poseHistory.size() > 100) {
-            poseHistory.removeFirst();
-        }
+        poseHistory.add(localizer.getPose(), System.nanoTime());
 
         estimatedPoseWriter.write(new PoseMessage(localizer.getPose()));
 
@@ -476,20 +491,9 @@ public final class TankDrive {
     }
 
     private void drawPoseHistory(Canvas c) {
-        double[] xPoints = new double[poseHistory.size()];
-        double[] yPoints = new double[poseHistory.size()];
-
-        int i = 0;
-        for (Pose2d t : poseHistory) {
-            xPoints[i] = t.position.x;
-            yPoints[i] = t.position.y;
-
-            i++;
-        }
-
         c.setStrokeWidth(1);
         c.setStroke("#3F51B5");
-        c.strokePolyline(xPoints, yPoints);
+        poseHistory.strokePolyline(c);
     }
 
     public TrajectoryActionBuilder actionBuilder(Pose2d beginPose) {
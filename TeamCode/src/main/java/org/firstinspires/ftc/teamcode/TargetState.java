@@ -0,0 +1,60 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.Pose2dDual;
+import com.acmerobotics.roadrunner.Time;
+
+/**
+ * Mutable world-frame target pose with its velocity and acceleration.
+ * The drive reuses one instance every control tick instead of passing Pose2dDual around.
+ */
+public final class TargetState {
+    public double x, y, heading;
+    public double cos = 1, sin;
+    public double vx, vy, omega;
+    public double ax, ay, alpha;
+
+    /**
+     * Copies value, velocity and acceleration out of a (size 3) Pose2dDual.
+     */
+    public void set(Pose2dDual<Time> pose) {
+        x = pose.position.x.get(0);
+        vx = pose.position.x.get(1);
+        ax = pose.position.x.get(2);
+
+        y = pose.position.y.get(0);
+        vy = pose.position.y.get(1);
+        ay = pose.position.y.get(2);
+
+        cos = pose.heading.real.get(0);
+        sin = pose.heading.imag.get(0);
+        heading = Math.atan2(sin, cos);
+
+        // d/dt atan2(imag, real) for a unit rotation; the cross terms cancel in the second derivative
+        omega = cos * pose.heading.imag.get(1) - sin * pose.heading.real.get(1);
+        alpha = cos * pose.heading.imag.get(2) - sin * pose.heading.real.get(2);
+    }
+
+    public void set(double x, double y, double heading,
+                    double vx, double vy, double omega,
+                    double ax, double ay, double alpha) {
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+        cos = Math.cos(heading);
+        sin = Math.sin(heading);
+        this.vx = vx;
+        this.vy = vy;
+        this.omega = omega;
+        this.ax = ax;
+        this.ay = ay;
+        this.alpha = alpha;
+    }
+
+    /**
+     * Allocates a Pose2d of the target; keep it off the control path (drawing only).
+     */
+    public Pose2d toPose() {
+        return new Pose2d(x, y, heading);
+    }
+}
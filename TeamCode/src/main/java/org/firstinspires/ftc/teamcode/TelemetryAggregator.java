@@ -0,0 +1,106 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.dashboard.FtcDashboard;
+import com.acmerobotics.dashboard.config.Config;
+import com.acmerobotics.dashboard.telemetry.TelemetryPacket;
+
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Collects key/value telemetry from subsystems into fixed slots and sends it out together:
+ * one telemetry.update() to the Driver Station plus one packet to FTC Dashboard per flush.
+ * Publishing overwrites the slot, so values between flushes are dropped rather than queued,
+ * and it never allocates.
+ */
+@Config
+public final class TelemetryAggregator {
+    public static class Params {
+        public double flushPeriodMs = 100;
+    }
+
+    public static Params PARAMS = new Params();
+
+    private final Telemetry telemetry;
+
+    private final String[] keys;
+    private final double[] values;
+    private final boolean[] isBoolean;
+    private int slotCount;
+
+    private final List<Consumer<TelemetryPacket>> sources = new ArrayList<>();
+
+    private long lastFlushNanos;
+
+    public TelemetryAggregator(Telemetry telemetry, int maxSlots) {
+        this.telemetry = telemetry;
+        keys = new String[maxSlots];
+        values = new double[maxSlots];
+        isBoolean = new boolean[maxSlots];
+    }
+
+    /**
+     * Reserves a slot for the key and returns the handle to publish into.
+     */
+    public int register(String key) {
+        if (slotCount == keys.length) {
+            throw new IllegalStateException("aggregator is full; raise maxSlots");
+        }
+
+        keys[slotCount] = key;
+        return slotCount++;
+    }
+
+    public void put(int slot, double value) {
+        values[slot] = value;
+        isBoolean[slot] = false;
+    }
+
+    public void put(int slot, boolean value) {
+        values[slot] = value ? 1 : 0;
+        isBoolean[slot] = true;
+    }
+
+    /**
+     * Adds something that writes its own entries into every flushed dashboard packet,
+     * e.g. {@code profiler::report}.
+     */
+    public void addSource(Consumer<TelemetryPacket> source) {
+        sources.add(source);
+    }
+
+    /**
+     * Flushes if the flush period has elapsed. Call this every loop when not using a scheduler.
+     */
+    public boolean flushIfDue() {
+        if (System.nanoTime() - lastFlushNanos < PARAMS.flushPeriodMs * 1e6) {
+            return false;
+        }
+
+        flush();
+        return true;
+    }
+
+    /**
+     * Sends the current value of every slot to the Driver Station and FTC Dashboard.
+     */
+    public void flush() {
+        lastFlushNanos = System.nanoTime();
+
+        TelemetryPacket p = new TelemetryPacket();
+        for (int i = 0; i < slotCount; i++) {
+            Object value = isBoolean[i] ? (Object) (values[i] != 0) : (Object) values[i];
+            telemetry.addData(keys[i], value);
+            p.put(keys[i], value);
+        }
+        for (Consumer<TelemetryPacket> source : sources) {
+            source.accept(p);
+        }
+
+        telemetry.update();
+        FtcDashboard.getInstance().sendTelemetryPacket(p);
+    }
+}
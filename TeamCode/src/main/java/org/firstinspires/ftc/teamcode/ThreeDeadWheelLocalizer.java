@@ -1,13 +1,9 @@
 package org.firstinspires.ftc.teamcode;
 
 import com.acmerobotics.dashboard.config.Config;
-import com.acmerobotics.roadrunner.DualNum;
 import com.acmerobotics.roadrunner.Pose2d;
 import com.acmerobotics.roadrunner.PoseVelocity2d;
-import com.acmerobotics.roadrunner.Time;
-import com.acmerobotics.roadrunner.Twist2dDual;
 import com.acmerobotics.roadrunner.Vector2d;
-import com.acmerobotics.roadrunner.Vector2dDual;
 import com.acmerobotics.roadrunner.ftc.Encoder;
 import com.acmerobotics.roadrunner.ftc.FlightRecorder;
 import com.acmerobotics.roadrunner.ftc.OverflowEncoder;
@@ -18,50 +14,85 @@ import com.qualcomm.robotcore.hardware.HardwareMap;
 
 import org.firstinspires.ftc.teamcode.messages.ThreeDeadWheelInputsMessage;
 
+import java.util.function.LongSupplier;
+
 @Config
 public final class ThreeDeadWheelLocalizer implements Localizer {
     public static class Params {
         public double par0YTicks = 0.0; // y position of the first parallel encoder (in tick units)
         public double par1YTicks = 1.0; // y position of the second parallel encoder (in tick units)
         public double perpXTicks = 0.0; // x position of the perpendicular encoder (in tick units)
+
+        // velocity source for the encoders: the hub's, or estimated from recent positions
+        public VelocityEstimator.Type velocityEstimator = VelocityEstimator.Type.HUB;
+        public int velocityWindow = 8; // samples in the LEAST_SQUARES fit
+        public double velocityAlpha = 0.5; // ALPHA_BETA gains
+        public double velocityBeta = 0.15;
     }
 
     public static Params PARAMS = new Params();
 
     public final Encoder par0, par1, perp;
 
+    // null when using the hub velocity
+    private final VelocityEstimator par0Vel, par1Vel, perpVel;
+
     public final double inPerTick;
 
     private int lastPar0Pos, lastPar1Pos, lastPerpPos;
     private boolean initialized;
-    private Pose2d pose;
+    private final PoseIntegrator pose;
+
+    // time base for the velocity estimators; replaced with the log's timestamps when replaying
+    private LongSupplier clock = System::nanoTime;
 
     public ThreeDeadWheelLocalizer(HardwareMap hardwareMap, double inPerTick, Pose2d initialPose) {
         // TODO: make sure your config has **motors** with these names (or change them)
         //   the encoders should be plugged into the slot matching the named motor
         //   see https://ftc-docs.firstinspires.org/en/latest/hardware_and_software_configuration/configuring/index.html
-        par0 = new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "par0")));
-        par1 = new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "par1")));
-        perp = new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "perp")));
+        this(new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "par0"))),
+                new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "par1"))),
+                new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "perp"))),
+                inPerTick, initialPose);
 
         // TODO: reverse encoder directions if needed
         //   par0.setDirection(DcMotorSimple.Direction.REVERSE);
+    }
+
+    /**
+     * Runs on any encoders, e.g. the stand-ins LocalizerReplay feeds from a log.
+     */
+    public ThreeDeadWheelLocalizer(Encoder par0, Encoder par1, Encoder perp, double inPerTick, Pose2d initialPose) {
+        this.par0 = par0;
+        this.par1 = par1;
+        this.perp = perp;
 
         this.inPerTick = inPerTick;
 
+        par0Vel = VelocityEstimator.create(PARAMS.velocityEstimator,
+                PARAMS.velocityWindow, PARAMS.velocityAlpha, PARAMS.velocityBeta);
+        par1Vel = VelocityEstimator.create(PARAMS.velocityEstimator,
+                PARAMS.velocityWindow, PARAMS.velocityAlpha, PARAMS.velocityBeta);
+        perpVel = VelocityEstimator.create(PARAMS.velocityEstimator,
+                PARAMS.velocityWindow, PARAMS.velocityAlpha, PARAMS.velocityBeta);
+
         FlightRecorder.write("THREE_DEAD_WHEEL_PARAMS", PARAMS);
 
-        pose = initialPose;
+        pose = new PoseIntegrator(initialPose);
+    }
+
+    public void setClock(LongSupplier clock) {
+        this.clock = clock;
     }
 
     @Override
     public void setPose(Pose2d pose) {
-        this.pose = pose;
+        this.pose.set(pose);
     }
 
     @Override
     public Pose2d getPose() {
-        return pose;
+        return pose.getPose();
     }
 
     @Override
@@ -69,6 +100,10 @@ public final class ThreeDeadWheelLocalizer implements Localizer {
         PositionVelocityPair par0PosVel = par0.getPositionAndVelocity();
         PositionVelocityPair par1PosVel = par1.getPositionAndVelocity();
         PositionVelocityPair perpPosVel = perp.getPositionAndVelocity();
+        long readTime = clock.getAsLong();
+        double par0VelTicks = par0Vel == null ? par0PosVel.velocity : par0Vel.update(readTime, par0PosVel.position);
+        double par1VelTicks = par1Vel == null ? par1PosVel.velocity : par1Vel.update(readTime, par1PosVel.position);
+        double perpVelTicks = perpVel == null ? perpPosVel.velocity : perpVel.update(readTime, perpPosVel.position);
 
         FlightRecorder.write("THREE_DEAD_WHEEL_INPUTS", new ThreeDeadWheelInputsMessage(par0PosVel, par1PosVel, perpPosVel));
 
@@ -86,28 +121,19 @@ public final class ThreeDeadWheelLocalizer implements Localizer {
         int par1PosDelta = par1PosVel.position - lastPar1Pos;
         int perpPosDelta = perpPosVel.position - lastPerpPos;
 
-        Twist2dDual<Time> twist = new Twist2dDual<>(
-                new Vector2dDual<>(
-                        new DualNum<Time>(new double[] {
-                                (PARAMS.par0YTicks * par1PosDelta - PARAMS.par1YTicks * par0PosDelta) / (PARAMS.par0YTicks - PARAMS.par1YTicks),
-                                (PARAMS.par0YTicks * par1PosVel.velocity - PARAMS.par1YTicks * par0PosVel.velocity) / (PARAMS.par0YTicks - PARAMS.par1YTicks),
-                        }).times(inPerTick),
-                        new DualNum<Time>(new double[] {
-                                (PARAMS.perpXTicks / (PARAMS.par0YTicks - PARAMS.par1YTicks) * (par1PosDelta - par0PosDelta) + perpPosDelta),
-                                (PARAMS.perpXTicks / (PARAMS.par0YTicks - PARAMS.par1YTicks) * (par1PosVel.velocity - par0PosVel.velocity) + perpPosVel.velocity),
-                        }).times(inPerTick)
-                ),
-                new DualNum<>(new double[] {
-                        (par0PosDelta - par1PosDelta) / (PARAMS.par0YTicks - PARAMS.par1YTicks),
-                        (par0PosVel.velocity - par1PosVel.velocity) / (PARAMS.par0YTicks - PARAMS.par1YTicks),
-                })
-        );
+        double parSpread = PARAMS.par0YTicks - PARAMS.par1YTicks;
+        double dx = (PARAMS.par0YTicks * par1PosDelta - PARAMS.par1YTicks * par0PosDelta) / parSpread * inPerTick;
+        double dy = (PARAMS.perpXTicks / parSpread * (par1PosDelta - par0PosDelta) + perpPosDelta) * inPerTick;
+        double dHeading = (par0PosDelta - par1PosDelta) / parSpread;
+        double vx = (PARAMS.par0YTicks * par1VelTicks - PARAMS.par1YTicks * par0VelTicks) / parSpread * inPerTick;
+        double vy = (PARAMS.perpXTicks / parSpread * (par1VelTicks - par0VelTicks) + perpVelTicks) * inPerTick;
+        double omega = (par0VelTicks - par1VelTicks) / parSpread;
 
         lastPar0Pos = par0PosVel.position;
         lastPar1Pos = par1PosVel.position;
         lastPerpPos = perpPosVel.position;
 
-        pose = pose.plus(twist.value());
-        return twist.velocity().value();
+        pose.plus(dx, dy, dHeading);
+        return new PoseVelocity2d(new Vector2d(vx, vy), omega);
     }
 }
@@ -0,0 +1,75 @@
+package org.firstinspires.ftc.teamcode;
+
+/**
+ * The drive's per-tick tracking math on doubles: HolonomicController.compute,
+ * MecanumKinematics.inverse and MotorFeedforward.compute in one pass, with the gains and
+ * feedforward taken from {@link MecanumDrive#PARAMS}. It keeps its results in public fields and
+ * allocates nothing (MecanumDriveAllocationTest checks the follow action around it;
+ * TrackingControllerTest checks it against the RoadRunner pipeline).
+ */
+public final class TrackingController {
+    // target pose relative to the actual pose, in the robot frame
+    public double xError, yError, headingError;
+
+    // robot-frame command and the target's feedforward acceleration
+    public double cmdX, cmdY, cmdAng;
+    public double accX, accY, alpha;
+
+    public double leftFrontPower, leftBackPower, rightBackPower, rightFrontPower;
+
+    private final double trackWidth, lateralMultiplier;
+
+    public TrackingController(double trackWidth, double lateralMultiplier) {
+        this.trackWidth = trackWidth;
+        this.lateralMultiplier = lateralMultiplier;
+    }
+
+    /**
+     * @param x, y, cos, sin actual world-frame pose (heading as a unit rotation)
+     * @param vx, vy, omega actual robot-frame velocity
+     */
+    public void update(TargetState target,
+                       double x, double y, double cos, double sin,
+                       double vx, double vy, double omega,
+                       double voltage) {
+        // target velocity in the target frame, with its derivative
+        double tc = target.cos, ts = target.sin;
+        double velX = tc * target.vx + ts * target.vy;
+        double velY = -ts * target.vx + tc * target.vy;
+        accX = tc * target.ax + ts * target.ay + target.omega * velY;
+        accY = -ts * target.ax + tc * target.ay - target.omega * velX;
+        alpha = target.alpha;
+
+        // target pose relative to the actual pose (target.minusExp(actual))
+        double dx = target.x - x;
+        double dy = target.y - y;
+        xError = cos * dx + sin * dy;
+        yError = -sin * dx + cos * dy;
+        headingError = Math.atan2(cos * ts - sin * tc, cos * tc + sin * ts);
+
+        MecanumDrive.Params params = MecanumDrive.PARAMS;
+        cmdX = velX + params.axialGain * xError
+                + params.axialVelGain * (velX - vx);
+        cmdY = velY + params.lateralGain * yError
+                + params.lateralVelGain * (velY - vy);
+        cmdAng = target.omega + params.headingGain * headingError
+                + params.headingVelGain * (target.omega - omega);
+
+        double lm = lateralMultiplier, tw = trackWidth;
+        leftFrontPower = feedforward(cmdX - cmdY * lm - cmdAng * tw,
+                accX - accY * lm - alpha * tw) / voltage;
+        leftBackPower = feedforward(cmdX + cmdY * lm - cmdAng * tw,
+                accX + accY * lm - alpha * tw) / voltage;
+        rightBackPower = feedforward(cmdX - cmdY * lm + cmdAng * tw,
+                accX - accY * lm + alpha * tw) / voltage;
+        rightFrontPower = feedforward(cmdX + cmdY * lm + cmdAng * tw,
+                accX + accY * lm + alpha * tw) / voltage;
+    }
+
+    private static double feedforward(double vel, double accel) {
+        MecanumDrive.Params params = MecanumDrive.PARAMS;
+        return params.kS * Math.signum(vel)
+                + params.kV / params.inPerTick * vel
+                + params.kA / params.inPerTick * accel;
+    }
+}
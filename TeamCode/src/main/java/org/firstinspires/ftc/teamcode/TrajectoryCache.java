@@ -0,0 +1,184 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores sampled trajectories on the robot so later inits load them instead of rebuilding.
+ * Files are named by a SHA-256 of a key that covers the builder calls and every field of
+ * MecanumDrive.PARAMS, so changing either simply misses the cache; stale files are never read.
+ * Loading memory-maps the file and bulk-copies the rows out of it.
+ */
+@Config
+public final class TrajectoryCache {
+    public static class Params {
+        public boolean enabled = true;
+    }
+
+    public static Params PARAMS = new Params();
+
+    public static final File DIR = new File(AppUtil.ROOT_FOLDER, "RoadRunner/trajectory-cache");
+
+    private static final String TAG = "TrajectoryCache";
+
+    private static final int MAGIC = 0x52524343; // "RRCC"
+    // bump when the file layout or the sampling changes
+    private static final int VERSION = 3;
+
+    // file: magic, version, segment count, padding (4 ints), then per segment
+    // turn flag, row count (2 ints), dt, duration, position/heading/velocity error estimates
+    // (5 doubles), rows; everything stays 8-byte aligned
+    private static final int HEADER_BYTES = 16;
+    private static final int SEGMENT_HEADER_BYTES = 48;
+
+    private TrajectoryCache() {
+    }
+
+    /**
+     * Returns the cache key for a builder description: the description, the format version and
+     * every MecanumDrive.PARAMS field, hashed.
+     */
+    public static String key(String builderCalls) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(VERSION).append('\n').append(builderCalls).append('\n');
+        for (Field f : MecanumDrive.Params.class.getFields()) {
+            if (Modifier.isStatic(f.getModifiers())) {
+                continue;
+            }
+            try {
+                sb.append(f.getName()).append('=').append(f.get(MecanumDrive.PARAMS)).append(';');
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return sha256(sb.toString());
+    }
+
+    private static String sha256(String s) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static File file(String key) {
+        return new File(DIR, key + ".bin");
+    }
+
+    /**
+     * Returns the cached segments for key, or null on a miss (or a disabled, unreadable or
+     * damaged cache; damaged files are deleted).
+     */
+    public static List<TrajectorySamples> load(String key) {
+        File file = file(key);
+        if (!PARAMS.enabled || !file.isFile()) {
+            return null;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buf.remaining() < HEADER_BYTES || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                throw new IOException("bad header");
+            }
+            int segments = buf.getInt();
+            buf.getInt();
+
+            List<TrajectorySamples> out = new ArrayList<>(segments);
+            for (int s = 0; s < segments; s++) {
+                if (buf.remaining() < SEGMENT_HEADER_BYTES) {
+                    throw new IOException("truncated");
+                }
+                boolean turn = buf.getInt() != 0;
+                int count = buf.getInt();
+                double dt = buf.getDouble();
+                double duration = buf.getDouble();
+                double positionError = buf.getDouble();
+                double headingError = buf.getDouble();
+                double velocityError = buf.getDouble();
+                if (count < 1 || buf.remaining() < (long) count * TrajectorySamples.STRIDE * 8) {
+                    throw new IOException("truncated");
+                }
+
+                double[] rows = new double[count * TrajectorySamples.STRIDE];
+                buf.asDoubleBuffer().get(rows);
+                buf.position(buf.position() + rows.length * 8);
+                out.add(new TrajectorySamples(turn, dt, duration, rows, positionError, headingError, velocityError));
+            }
+            return out;
+        } catch (IOException | RuntimeException e) {
+            RobotLog.ww(TAG, e, "discarding unreadable cache file %s", file);
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Writes segments under key. Failures are logged and otherwise ignored; the next init
+     * just builds again.
+     */
+    public static void save(String key, List<TrajectorySamples> segments) {
+        if (!PARAMS.enabled) {
+            return;
+        }
+
+        int bytes = HEADER_BYTES;
+        for (TrajectorySamples s : segments) {
+            bytes += SEGMENT_HEADER_BYTES + s.rows.length * 8;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(bytes);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(segments.size()).putInt(0);
+        for (TrajectorySamples s : segments) {
+            buf.putInt(s.turn ? 1 : 0).putInt(s.count).putDouble(s.dt).putDouble(s.duration)
+                    .putDouble(s.maxPositionError).putDouble(s.maxHeadingError).putDouble(s.maxVelocityError);
+            buf.asDoubleBuffer().put(s.rows);
+            buf.position(buf.position() + s.rows.length * 8);
+        }
+        buf.flip();
+
+        // write next to the target and rename, so a reader never sees a partial file
+        File file = file(key), tmp = new File(DIR, key + ".tmp");
+        try {
+            if (!DIR.isDirectory() && !DIR.mkdirs()) {
+                throw new IOException("can't create " + DIR);
+            }
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                FileChannel channel = out.getChannel();
+                while (buf.hasRemaining()) {
+                    channel.write(buf);
+                }
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("can't rename " + tmp);
+            }
+        } catch (IOException e) {
+            RobotLog.ww(TAG, e, "couldn't write cache file %s", file);
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+        }
+    }
+}
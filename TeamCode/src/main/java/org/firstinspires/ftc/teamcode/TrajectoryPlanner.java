@@ -0,0 +1,80 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.acmerobotics.roadrunner.Action;
+import com.acmerobotics.roadrunner.Pose2d;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds drive-to-pose actions through MecanumDrive.actionBuilder on a background thread,
+ * so a teleop loop can ask for one without stalling driver control while it builds.
+ * There is one worker thread; a new request cancels the previous one, so a queued stale
+ * request never starts. A build that is already running can't be stopped (RoadRunner doesn't
+ * check for interrupts): it finishes on the worker, delaying the next request by the rest of
+ * its build time, and its result is dropped. The thread exits after
+ * idleTimeoutMs without work, so a planner nobody closed doesn't outlive its OpMode for long.
+ */
+@Config
+public final class TrajectoryPlanner implements AutoCloseable {
+    public static class Params {
+        public long idleTimeoutMs = 2000;
+    }
+
+    public static Params PARAMS = new Params();
+
+    private final MecanumDrive drive;
+    private final ThreadPoolExecutor executor;
+
+    private Future<Action> pending;
+
+    public TrajectoryPlanner(MecanumDrive drive) {
+        this.drive = drive;
+        executor = new ThreadPoolExecutor(1, 1, PARAMS.idleTimeoutMs, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "TrajectoryPlanner");
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Plans from the current pose estimate to goal.
+     */
+    public Future<Action> plan(Pose2d goal) {
+        return plan(drive.localizer.getPose(), goal);
+    }
+
+    /**
+     * Plans a straight strafe from start to goal, turning to the goal heading on the way, and
+     * cancels any earlier request. The future holds the ready-to-run action.
+     */
+    public synchronized Future<Action> plan(Pose2d start, Pose2d goal) {
+        cancel();
+        pending = executor.submit(() -> drive.actionBuilder(start)
+                .strafeToLinearHeading(goal.position, goal.heading)
+                .build());
+        return pending;
+    }
+
+    /**
+     * Drops the pending request: its future reports cancelled right away, but a build already
+     * running keeps the worker busy until it finishes.
+     */
+    public synchronized void cancel() {
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        cancel();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,140 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.roadrunner.Pose2dDual;
+import com.acmerobotics.roadrunner.Time;
+import com.acmerobotics.roadrunner.TimeTrajectory;
+import com.acmerobotics.roadrunner.TimeTurn;
+
+import java.util.function.DoubleFunction;
+
+/**
+ * A trajectory or turn sampled at a fixed time step (at most the requested one): one row of target pose, velocity and
+ * acceleration (x, y, heading, vx, vy, omega, ax, ay, alpha) per step, in one flat array.
+ * The last row is the end of the motion. {@link #get} is O(1): pose and velocity are cubic
+ * Hermite interpolated using the stored derivatives, acceleration linearly.
+ * <p>
+ * Sampling also checks the table against the exact motion halfway between rows, where the
+ * Hermite error usually peaks, and keeps the worst position, heading and velocity error. That is
+ * an estimate of the error the table adds to the target, not a guaranteed bound: the sweep in
+ * tuning/SampleTableBenchmark can find slightly more between checks (at dt = 5 ms both are
+ * typically well under a thousandth of an inch).
+ */
+public final class TrajectorySamples {
+    public static final int STRIDE = 9;
+
+    public final boolean turn;
+    public final double dt, duration;
+    public final int count;
+    final double[] rows;
+
+    // worst interpolation error found at the row midpoints (in, rad, see velocityError)
+    public final double maxPositionError, maxHeadingError, maxVelocityError;
+
+    TrajectorySamples(boolean turn, double dt, double duration, double[] rows,
+                      double maxPositionError, double maxHeadingError, double maxVelocityError) {
+        this.turn = turn;
+        this.dt = dt;
+        this.duration = duration;
+        this.rows = rows;
+        count = rows.length / STRIDE;
+        this.maxPositionError = maxPositionError;
+        this.maxHeadingError = maxHeadingError;
+        this.maxVelocityError = maxVelocityError;
+    }
+
+    public static TrajectorySamples of(TimeTrajectory trajectory, double dt) {
+        return of(false, trajectory.duration, trajectory::get, dt);
+    }
+
+    public static TrajectorySamples of(TimeTurn turn, double dt) {
+        return of(true, turn.duration, turn::get, dt);
+    }
+
+    private static TrajectorySamples of(boolean turn, double duration,
+                                        DoubleFunction<Pose2dDual<Time>> motion, double dt) {
+        TargetState s = new TargetState();
+        int n = (int) Math.ceil(duration / dt) + 1;
+        // shrink the step slightly so the last row lands exactly on the end
+        if (n > 1) {
+            dt = duration / (n - 1);
+        }
+        double[] rows = new double[n * STRIDE];
+        for (int i = 0; i < n; i++) {
+            s.set(motion.apply(i == n - 1 ? duration : i * dt));
+            int k = i * STRIDE;
+            rows[k] = s.x;
+            rows[k + 1] = s.y;
+            rows[k + 2] = s.heading;
+            rows[k + 3] = s.vx;
+            rows[k + 4] = s.vy;
+            rows[k + 5] = s.omega;
+            rows[k + 6] = s.ax;
+            rows[k + 7] = s.ay;
+            rows[k + 8] = s.alpha;
+        }
+
+        TrajectorySamples table = new TrajectorySamples(turn, dt, duration, rows, 0, 0, 0);
+        TargetState interpolated = new TargetState();
+        double position = 0, heading = 0, velocity = 0;
+        for (int i = 0; i < n - 1; i++) {
+            double t = Math.min((i + 0.5) * dt, duration);
+            s.set(motion.apply(t));
+            table.get(t, interpolated);
+            position = Math.max(position, Math.hypot(s.x - interpolated.x, s.y - interpolated.y));
+            heading = Math.max(heading, Math.abs(Math.IEEEremainder(s.heading - interpolated.heading, 2 * Math.PI)));
+            velocity = Math.max(velocity, velocityError(s, interpolated));
+        }
+        return new TrajectorySamples(turn, dt, duration, rows, position, heading, velocity);
+    }
+
+    /**
+     * The velocity error metric of {@link #maxVelocityError}: the worse of the linear error
+     * (in/s) and the angular error (rad/s), so turns are covered too.
+     */
+    public static double velocityError(TargetState exact, TargetState interpolated) {
+        return Math.max(Math.hypot(exact.vx - interpolated.vx, exact.vy - interpolated.vy),
+                Math.abs(exact.omega - interpolated.omega));
+    }
+
+    /**
+     * Writes the target at time t into out, interpolated between the two neighbouring rows
+     * (heading the short way round). Clamped to the start and end.
+     */
+    public void get(double t, TargetState out) {
+        double u = Math.max(0, t) / dt;
+        int i = (int) u;
+        if (i >= count - 1) {
+            int k = (count - 1) * STRIDE;
+            out.set(rows[k], rows[k + 1], rows[k + 2], rows[k + 3], rows[k + 4], rows[k + 5],
+                    rows[k + 6], rows[k + 7], rows[k + 8]);
+            return;
+        }
+
+        // cubic Hermite basis, with the tangents scaled by dt
+        double f = u - i, f2 = f * f, f3 = f2 * f;
+        double h00 = 2 * f3 - 3 * f2 + 1, h01 = 3 * f2 - 2 * f3;
+        double h10 = (f3 - 2 * f2 + f) * dt, h11 = (f3 - f2) * dt;
+
+        int a = i * STRIDE, b = a + STRIDE;
+        double heading0 = rows[a + 2];
+        double heading1 = heading0 + Math.IEEEremainder(rows[b + 2] - heading0, 2 * Math.PI);
+        out.set(
+                h00 * rows[a] + h10 * rows[a + 3] + h01 * rows[b] + h11 * rows[b + 3],
+                h00 * rows[a + 1] + h10 * rows[a + 4] + h01 * rows[b + 1] + h11 * rows[b + 4],
+                h00 * heading0 + h10 * rows[a + 5] + h01 * heading1 + h11 * rows[b + 5],
+                h00 * rows[a + 3] + h10 * rows[a + 6] + h01 * rows[b + 3] + h11 * rows[b + 6],
+                h00 * rows[a + 4] + h10 * rows[a + 7] + h01 * rows[b + 4] + h11 * rows[b + 7],
+                h00 * rows[a + 5] + h10 * rows[a + 8] + h01 * rows[b + 5] + h11 * rows[b + 8],
+                rows[a + 6] + f * (rows[b + 6] - rows[a + 6]),
+                rows[a + 7] + f * (rows[b + 7] - rows[a + 7]),
+                rows[a + 8] + f * (rows[b + 8] - rows[a + 8]));
+    }
+
+    public double x(int i) {
+        return rows[i * STRIDE];
+    }
+
+    public double y(int i) {
+        return rows[i * STRIDE + 1];
+    }
+}
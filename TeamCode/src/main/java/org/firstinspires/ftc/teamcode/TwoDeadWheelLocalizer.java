@@ -1,14 +1,10 @@
 package org.firstinspires.ftc.teamcode;
 
 import com.acmerobotics.dashboard.config.Config;
-import com.acmerobotics.roadrunner.DualNum;
 import com.acmerobotics.roadrunner.Pose2d;
 import com.acmerobotics.roadrunner.PoseVelocity2d;
 import com.acmerobotics.roadrunner.Rotation2d;
-import com.acmerobotics.roadrunner.Time;
-import com.acmerobotics.roadrunner.Twist2dDual;
 import com.acmerobotics.roadrunner.Vector2d;
-import com.acmerobotics.roadrunner.Vector2dDual;
 import com.acmerobotics.roadrunner.ftc.Encoder;
 import com.acmerobotics.roadrunner.ftc.FlightRecorder;
 import com.acmerobotics.roadrunner.ftc.OverflowEncoder;
@@ -24,11 +20,19 @@ import org.firstinspires.ftc.robotcore.external.navigation.UnnormalizedAngleUnit
 import org.firstinspires.ftc.robotcore.external.navigation.YawPitchRollAngles;
 import org.firstinspires.ftc.teamcode.messages.TwoDeadWheelInputsMessage;
 
+import java.util.function.LongSupplier;
+
 @Config
 public final class TwoDeadWheelLocalizer implements Localizer {
     public static class Params {
         public double parYTicks = 0.0; // y position of the parallel encoder (in tick units)
         public double perpXTicks = 0.0; // x position of the perpendicular encoder (in tick units)
+
+        // velocity source for the encoders: the hub's, or estimated from recent positions
+        public VelocityEstimator.Type velocityEstimator = VelocityEstimator.Type.HUB;
+        public int velocityWindow = 8; // samples in the LEAST_SQUARES fit
+        public double velocityAlpha = 0.5; // ALPHA_BETA gains
+        public double velocityBeta = 0.15;
     }
 
     public static Params PARAMS = new Params();
@@ -36,6 +40,9 @@ public final class TwoDeadWheelLocalizer implements Localizer {
     public final Encoder par, perp;
     public final IMU imu;
 
+    // null when using the hub velocity
+    private final VelocityEstimator parVel, perpVel;
+
     private int lastParPos, lastPerpPos;
     private Rotation2d lastHeading;
 
@@ -43,41 +50,64 @@ public final class TwoDeadWheelLocalizer implements Localizer {
 
     private double lastRawHeadingVel, headingVelOffset;
     private boolean initialized;
-    private Pose2d pose;
+    private final PoseIntegrator pose;
+
+    // time base for the velocity estimators; replaced with the log's timestamps when replaying
+    private LongSupplier clock = System::nanoTime;
 
     public TwoDeadWheelLocalizer(HardwareMap hardwareMap, IMU imu, double inPerTick, Pose2d initialPose) {
         // TODO: make sure your config has **motors** with these names (or change them)
         //   the encoders should be plugged into the slot matching the named motor
         //   see https://ftc-docs.firstinspires.org/en/latest/hardware_and_software_configuration/configuring/index.html
-        par = new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "par")));
-        perp = new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "perp")));
+        this(new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "par"))),
+                new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "perp"))),
+                imu, inPerTick, initialPose);
 
         // TODO: reverse encoder directions if needed
         //   par.setDirection(DcMotorSimple.Direction.REVERSE);
+    }
 
+    /**
+     * Runs on any encoders and IMU, e.g. the stand-ins LocalizerReplay feeds from a log.
+     */
+    public TwoDeadWheelLocalizer(Encoder par, Encoder perp, IMU imu, double inPerTick, Pose2d initialPose) {
+        this.par = par;
+        this.perp = perp;
         this.imu = imu;
 
         this.inPerTick = inPerTick;
 
+        parVel = VelocityEstimator.create(PARAMS.velocityEstimator,
+                PARAMS.velocityWindow, PARAMS.velocityAlpha, PARAMS.velocityBeta);
+        perpVel = VelocityEstimator.create(PARAMS.velocityEstimator,
+                PARAMS.velocityWindow, PARAMS.velocityAlpha, PARAMS.velocityBeta);
+
         FlightRecorder.write("TWO_DEAD_WHEEL_PARAMS", PARAMS);
 
-        pose = initialPose;
+        pose = new PoseIntegrator(initialPose);
+    }
+
+    public void setClock(LongSupplier clock) {
+        this.clock = clock;
     }
 
     @Override
     public void setPose(Pose2d pose) {
-        this.pose = pose;
+        this.pose.set(pose);
     }
 
     @Override
     public Pose2d getPose() {
-        return pose;
+        return pose.getPose();
     }
 
     @Override
     public PoseVelocity2d update() {
         PositionVelocityPair parPosVel = par.getPositionAndVelocity();
         PositionVelocityPair perpPosVel = perp.getPositionAndVelocity();
+        long readTime = clock.getAsLong();
+        double parVelTicks = parVel == null ? parPosVel.velocity : parVel.update(readTime, parPosVel.position);
+        double perpVelTicks = perpVel == null ? perpPosVel.velocity : perpVel.update(readTime, perpPosVel.position);
 
         YawPitchRollAngles angles = imu.getRobotYawPitchRollAngles();
         // Use degrees here to work around https://github.com/FIRST-Tech-Challenge/FtcRobotController/issues/1070
@@ -116,28 +146,16 @@ public final class TwoDeadWheelLocalizer implements Localizer {
         int perpPosDelta = perpPosVel.position - lastPerpPos;
         double headingDelta = heading.minus(lastHeading);
 
-        Twist2dDual<Time> twist = new Twist2dDual<>(
-                new Vector2dDual<>(
-                        new DualNum<Time>(new double[] {
-                                parPosDelta - PARAMS.parYTicks * headingDelta,
-                                parPosVel.velocity - PARAMS.parYTicks * headingVel,
-                        }).times(inPerTick),
-                        new DualNum<Time>(new double[] {
-                                perpPosDelta - PARAMS.perpXTicks * headingDelta,
-                                perpPosVel.velocity - PARAMS.perpXTicks * headingVel,
-                        }).times(inPerTick)
-                ),
-                new DualNum<>(new double[] {
-                        headingDelta,
-                        headingVel,
-                })
-        );
+        double dx = (parPosDelta - PARAMS.parYTicks * headingDelta) * inPerTick;
+        double dy = (perpPosDelta - PARAMS.perpXTicks * headingDelta) * inPerTick;
+        double vx = (parVelTicks - PARAMS.parYTicks * headingVel) * inPerTick;
+        double vy = (perpVelTicks - PARAMS.perpXTicks * headingVel) * inPerTick;
 
         lastParPos = parPosVel.position;
         lastPerpPos = perpPosVel.position;
         lastHeading = heading;
 
-        pose = pose.plus(twist.value());
-        return twist.velocity().value();
+        pose.plus(dx, dy, headingDelta);
+        return new PoseVelocity2d(new Vector2d(vx, vy), headingVel);
     }
 }
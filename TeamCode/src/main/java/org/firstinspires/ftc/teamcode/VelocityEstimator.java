@@ -0,0 +1,32 @@
+package org.firstinspires.ftc.teamcode;
+
+/**
+ * Estimates an encoder's velocity from its timestamped positions, as an alternative to the
+ * hub-reported velocity, which is coarse and noisy at low speed.
+ */
+public interface VelocityEstimator {
+    enum Type {
+        HUB,
+        LEAST_SQUARES,
+        ALPHA_BETA,
+    }
+
+    /**
+     * Adds a position sample and returns the velocity estimate in position units per second.
+     */
+    double update(long timeNanos, double position);
+
+    /**
+     * Returns the estimator for type, or null for {@link Type#HUB} (use the hub velocity).
+     */
+    static VelocityEstimator create(Type type, int window, double alpha, double beta) {
+        switch (type) {
+            case LEAST_SQUARES:
+                return new LeastSquaresVelocityEstimator(window);
+            case ALPHA_BETA:
+                return new AlphaBetaVelocityEstimator(alpha, beta);
+            default:
+                return null;
+        }
+    }
+}
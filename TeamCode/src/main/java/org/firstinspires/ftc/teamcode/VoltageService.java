@@ -0,0 +1,72 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.qualcomm.robotcore.hardware.VoltageSensor;
+
+/**
+ * Samples the battery voltage at a low rate off the control loop and low-pass filters it.
+ * Readers get the latest immutable {@link Sample} without locking or touching the hub.
+ */
+@Config
+public final class VoltageService extends PeriodicWorker {
+    public static class Params {
+        public double samplePeriodMs = 100;
+        public double filterTimeConstantMs = 500;
+        public double idleTimeoutMs = 2000;
+    }
+
+    public static Params PARAMS = new Params();
+
+    public static final class Sample {
+        public final double voltage; // filtered
+        public final double rawVoltage;
+        public final long timestampNanos;
+
+        public Sample(double voltage, double rawVoltage, long timestampNanos) {
+            this.voltage = voltage;
+            this.rawVoltage = rawVoltage;
+            this.timestampNanos = timestampNanos;
+        }
+
+        public double ageSeconds() {
+            return (System.nanoTime() - timestampNanos) / 1e9;
+        }
+    }
+
+    public final VoltageSensor sensor;
+
+    private volatile Sample sample;
+
+    public VoltageService(VoltageSensor sensor) {
+        super("VoltageService", msToNanos(PARAMS.samplePeriodMs), msToNanos(PARAMS.idleTimeoutMs));
+        this.sensor = sensor;
+
+        double voltage = sensor.getVoltage();
+        sample = new Sample(voltage, voltage, System.nanoTime());
+    }
+
+    public Sample getSample() {
+        touch();
+        return sample;
+    }
+
+    /**
+     * Returns the filtered battery voltage.
+     */
+    public double getVoltage() {
+        return getSample().voltage;
+    }
+
+    @Override
+    protected void tick() {
+        double raw = sensor.getVoltage();
+        long now = System.nanoTime();
+
+        Sample last = sample;
+        double dt = (now - last.timestampNanos) / 1e9;
+        double tau = PARAMS.filterTimeConstantMs / 1e3;
+        double alpha = tau <= 0 ? 1 : dt / (tau + dt);
+
+        sample = new Sample(last.voltage + alpha * (raw - last.voltage), raw, now);
+    }
+}
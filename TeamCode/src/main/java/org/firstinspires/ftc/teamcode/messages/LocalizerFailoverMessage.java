@@ -0,0 +1,19 @@
+package org.firstinspires.ftc.teamcode.messages;
+
+import com.acmerobotics.roadrunner.Pose2d;
+
+public final class LocalizerFailoverMessage {
+    public long timestamp;
+    public boolean toSecondary;
+    public double x;
+    public double y;
+    public double heading;
+
+    public LocalizerFailoverMessage(boolean toSecondary, Pose2d pose) {
+        this.timestamp = System.nanoTime();
+        this.toSecondary = toSecondary;
+        this.x = pose.position.x;
+        this.y = pose.position.y;
+        this.heading = pose.heading.toDouble();
+    }
+}
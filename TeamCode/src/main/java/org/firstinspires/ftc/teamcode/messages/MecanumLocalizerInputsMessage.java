@@ -14,8 +14,10 @@ public final class MecanumLocalizerInputsMessage {
     public double yaw;
     public double pitch;
     public double roll;
+    // false on ticks that skipped the IMU read; the angles are then the last fresh sample's
+    public boolean imuFresh;
 
-    public MecanumLocalizerInputsMessage(PositionVelocityPair leftFront, PositionVelocityPair leftBack, PositionVelocityPair rightBack, PositionVelocityPair rightFront, YawPitchRollAngles angles) {
+    public MecanumLocalizerInputsMessage(PositionVelocityPair leftFront, PositionVelocityPair leftBack, PositionVelocityPair rightBack, PositionVelocityPair rightFront, YawPitchRollAngles angles, boolean imuFresh) {
         this.timestamp = System.nanoTime();
         this.leftFront = leftFront;
         this.leftBack = leftBack;
@@ -26,5 +28,6 @@ public final class MecanumLocalizerInputsMessage {
             this.pitch = angles.getPitch(AngleUnit.RADIANS);
             this.roll = angles.getRoll(AngleUnit.RADIANS);
         }
+        this.imuFresh = imuFresh;
     }
 }
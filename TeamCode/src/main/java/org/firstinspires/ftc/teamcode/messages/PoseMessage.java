@@ -14,5 +14,12 @@ public final class PoseMessage {
         this.y = pose.position.y;
         this.heading = pose.heading.toDouble();
     }
+
+    public PoseMessage(double x, double y, double heading) {
+        this.timestamp = System.nanoTime();
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+    }
 }
 
@@ -9,7 +9,13 @@ import com.acmerobotics.roadrunner.Vector2d;
 import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
 
 import org.firstinspires.ftc.teamcode.Drawing;
+import org.firstinspires.ftc.teamcode.EkfLocalizer;
+import org.firstinspires.ftc.teamcode.FailoverLocalizer;
+import org.firstinspires.ftc.teamcode.Localizer;
+import org.firstinspires.ftc.teamcode.LoopProfiler;
 import org.firstinspires.ftc.teamcode.MecanumDrive;
+import org.firstinspires.ftc.teamcode.OdometryService;
+import org.firstinspires.ftc.teamcode.PinpointLocalizer;
 import org.firstinspires.ftc.teamcode.TankDrive;
 
 public class LocalizationTest extends LinearOpMode {
@@ -19,57 +25,107 @@ public class LocalizationTest extends LinearOpMode {
 
         if (TuningOpModes.DRIVE_CLASS.equals(MecanumDrive.class)) {
             MecanumDrive drive = new MecanumDrive(hardwareMap, new Pose2d(0, 0, 0));
+            if (drive.ekf != null) {
+                drive.ekf.setAprilTags(EkfLocalizer.buildAprilTagProcessor(hardwareMap));
+            }
+
+            LoopProfiler profiler = new LoopProfiler(2);
+            int loopStage = profiler.addStage("loop");
+            int poseStage = profiler.addStage("updatePoseEstimate");
+
+            drive.bulkReads.claim(this);
+
+            try {
+                waitForStart();
+
+                while (opModeIsActive()) {
+                    long loopStart = profiler.start();
+                    drive.bulkReads.beginCycle(this);
+
+                    drive.setDrivePowers(new PoseVelocity2d(
+                            new Vector2d(
+                                    -gamepad1.left_stick_y,
+                                    -gamepad1.left_stick_x
+                            ),
+                            -gamepad1.right_stick_x
+                    ));
 
-            waitForStart();
-
-            while (opModeIsActive()) {
-                drive.setDrivePowers(new PoseVelocity2d(
-                        new Vector2d(
-                                -gamepad1.left_stick_y,
-                                -gamepad1.left_stick_x
-                        ),
-                        -gamepad1.right_stick_x
-                ));
-
-                drive.updatePoseEstimate();
-
-                Pose2d pose = drive.localizer.getPose();
-                telemetry.addData("x", pose.position.x);
-                telemetry.addData("y", pose.position.y);
-                telemetry.addData("heading (deg)", Math.toDegrees(pose.heading.toDouble()));
-                telemetry.update();
-
-                TelemetryPacket packet = new TelemetryPacket();
-                packet.fieldOverlay().setStroke("#3F51B5");
-                Drawing.drawRobot(packet.fieldOverlay(), pose);
-                FtcDashboard.getInstance().sendTelemetryPacket(packet);
+                    long t = profiler.start();
+                    drive.updatePoseEstimate();
+                    profiler.stop(poseStage, t);
+
+                    Pose2d pose = drive.localizer.getPose();
+                    telemetry.addData("x", pose.position.x);
+                    telemetry.addData("y", pose.position.y);
+                    telemetry.addData("heading (deg)", Math.toDegrees(pose.heading.toDouble()));
+                    telemetry.addData("bulk reads/cycle", drive.bulkReads.getReadsPerCycle());
+                    telemetry.addData("bulk read (ms)", drive.bulkReads.getLastLatencyMs());
+                    Localizer raw = TuningOpModes.unwrap(drive.localizer);
+                    if (raw instanceof MecanumDrive.DriveLocalizer) {
+                        MecanumDrive.DriveLocalizer dl = (MecanumDrive.DriveLocalizer) raw;
+                        telemetry.addData("imu read (ms)", dl.getImuReadMs());
+                        telemetry.addData("imu loop-rate gain", dl.getLoopRateGain());
+                        telemetry.addData("imu drift correction (deg)", Math.toDegrees(dl.getLastDriftCorrection()));
+                    } else if (raw instanceof PinpointLocalizer) {
+                        PinpointLocalizer pl = (PinpointLocalizer) raw;
+                        telemetry.addData("pinpoint read (ms)", pl.getLastReadMs());
+                        telemetry.addData("pinpoint mean read (ms)", pl.getMeanReadMs());
+                        telemetry.addData("pinpoint max read (ms)", pl.getMaxReadMs());
+                        telemetry.addData("pinpoint reads", pl.getReads());
+                        telemetry.addData("pinpoint bytes read", pl.getBytesRead());
+                        telemetry.addData("pinpoint transfer (bytes/s)", pl.getBytesPerSecond());
+                        telemetry.addData("pinpoint not-ready reads", pl.getNotReadyReads());
+                    }
+                    telemetry.update();
+
+                    TelemetryPacket packet = new TelemetryPacket();
+                    packet.fieldOverlay().setStroke("#3F51B5");
+                    Drawing.drawRobot(packet.fieldOverlay(), pose);
+                    profiler.stop(loopStage, loopStart);
+                    profiler.report(packet);
+                    if (drive.ekf != null) {
+                        drive.ekf.report(packet);
+                    }
+                    Localizer top = drive.localizer instanceof OdometryService
+                            ? ((OdometryService) drive.localizer).localizer : drive.localizer;
+                    if (top instanceof FailoverLocalizer) {
+                        ((FailoverLocalizer) top).report(packet);
+                    }
+                    FtcDashboard.getInstance().sendTelemetryPacket(packet);
+                }
+            } finally {
+                drive.close();
             }
         } else if (TuningOpModes.DRIVE_CLASS.equals(TankDrive.class)) {
             TankDrive drive = new TankDrive(hardwareMap, new Pose2d(0, 0, 0));
 
-            waitForStart();
-
-            while (opModeIsActive()) {
-                drive.setDrivePowers(new PoseVelocity2d(
-                        new Vector2d(
-                                -gamepad1.left_stick_y,
-                                0.0
-                        ),
-                        -gamepad1.right_stick_x
-                ));
-
-                drive.updatePoseEstimate();
-
-                Pose2d pose = drive.localizer.getPose();
-                telemetry.addData("x", pose.position.x);
-                telemetry.addData("y", pose.position.y);
-                telemetry.addData("heading (deg)", Math.toDegrees(pose.heading.toDouble()));
-                telemetry.update();
-
-                TelemetryPacket packet = new TelemetryPacket();
-                packet.fieldOverlay().setStroke("#3F51B5");
-                Drawing.drawRobot(packet.fieldOverlay(), pose);
-                FtcDashboard.getInstance().sendTelemetryPacket(packet);
+            try {
+                waitForStart();
+
+                while (opModeIsActive()) {
+                    drive.setDrivePowers(new PoseVelocity2d(
+                            new Vector2d(
+                                    -gamepad1.left_stick_y,
+                                    0.0
+                            ),
+                            -gamepad1.right_stick_x
+                    ));
+
+                    drive.updatePoseEstimate();
+
+                    Pose2d pose = drive.localizer.getPose();
+                    telemetry.addData("x", pose.position.x);
+                    telemetry.addData("y", pose.position.y);
+                    telemetry.addData("heading (deg)", Math.toDegrees(pose.heading.toDouble()));
+                    telemetry.update();
+
+                    TelemetryPacket packet = new TelemetryPacket();
+                    packet.fieldOverlay().setStroke("#3F51B5");
+                    Drawing.drawRobot(packet.fieldOverlay(), pose);
+                    FtcDashboard.getInstance().sendTelemetryPacket(packet);
+                }
+            } finally {
+                drive.close();
             }
         } else {
             throw new RuntimeException();
@@ -0,0 +1,104 @@
+package org.firstinspires.ftc.teamcode.tuning;
+
+import com.acmerobotics.roadrunner.DualNum;
+import com.acmerobotics.roadrunner.MecanumKinematics;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.Time;
+import com.acmerobotics.roadrunner.Twist2d;
+import com.acmerobotics.roadrunner.Twist2dDual;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+
+import org.firstinspires.ftc.teamcode.PoseIntegrator;
+
+import java.util.Random;
+
+/**
+ * Times PoseIntegrator against RoadRunner's MecanumKinematics.forward + Pose2d.plus on the same
+ * random wheel increments, on the hub's own CPU. Needs no hardware. That both agree bit for bit
+ * is checked by the PoseIntegratorTest unit test.
+ */
+public final class PoseIntegratorBenchmark extends LinearOpMode {
+    private static final int STEPS = 20_000;
+    private static final int ROUNDS = 5;
+
+    // arbitrary but realistic drive constants; the timing doesn't depend on tuning
+    private static final double IN_PER_TICK = 0.0023;
+    private static final double TRACK_WIDTH = 14.5;
+    private static final double LATERAL_MULTIPLIER = 1.1;
+
+    private final MecanumKinematics kinematics = new MecanumKinematics(TRACK_WIDTH, LATERAL_MULTIPLIER);
+
+    private int[][] increments;
+    private double[][] velocities;
+
+    @Override
+    public void runOpMode() throws InterruptedException {
+        Random random = new Random(16028);
+        increments = new int[STEPS][4];
+        velocities = new double[STEPS][4];
+        for (int i = 0; i < STEPS; i++) {
+            for (int j = 0; j < 4; j++) {
+                increments[i][j] = random.nextInt(401) - 200;
+                velocities[i][j] = random.nextInt(6001) - 3000;
+            }
+        }
+
+        telemetry.addLine("press start to run");
+        telemetry.update();
+        waitForStart();
+
+        double[] inc = new double[3], vel = new double[3];
+
+        // benchmark; the first rounds warm up the JIT, the last one is reported
+        double rrNanos = 0, fastNanos = 0;
+        for (int round = 0; round < ROUNDS && opModeIsActive(); round++) {
+            Pose2d p = new Pose2d(0, 0, 0);
+            long t = System.nanoTime();
+            for (int i = 0; i < STEPS; i++) {
+                p = roadRunnerStep(i, p);
+            }
+            rrNanos = (double) (System.nanoTime() - t) / STEPS;
+
+            PoseIntegrator q = new PoseIntegrator(new Pose2d(0, 0, 0));
+            t = System.nanoTime();
+            for (int i = 0; i < STEPS; i++) {
+                primitiveStep(i, q, inc, vel);
+            }
+            fastNanos = (double) (System.nanoTime() - t) / STEPS;
+        }
+
+        telemetry.addData("steps", STEPS);
+        telemetry.addData("RoadRunner (ns/update)", rrNanos);
+        telemetry.addData("PoseIntegrator (ns/update)", fastNanos);
+        telemetry.addData("speedup", rrNanos / fastNanos);
+        telemetry.update();
+
+        while (opModeIsActive()) {
+            idle();
+        }
+    }
+
+    // the code DriveLocalizer.update() used before PoseIntegrator
+    private Pose2d roadRunnerStep(int i, Pose2d pose) {
+        int[] d = increments[i];
+        double[] v = velocities[i];
+        Twist2dDual<Time> twist = kinematics.forward(new MecanumKinematics.WheelIncrements<>(
+                new DualNum<Time>(new double[] { d[0], v[0] }).times(IN_PER_TICK),
+                new DualNum<Time>(new double[] { d[1], v[1] }).times(IN_PER_TICK),
+                new DualNum<Time>(new double[] { d[2], v[2] }).times(IN_PER_TICK),
+                new DualNum<Time>(new double[] { d[3], v[3] }).times(IN_PER_TICK)
+        ));
+        return pose.plus(new Twist2d(twist.line.value(), twist.angle.value()));
+    }
+
+    // the code DriveLocalizer.update() uses now
+    private void primitiveStep(int i, PoseIntegrator pose, double[] inc, double[] vel) {
+        int[] d = increments[i];
+        double[] v = velocities[i];
+        PoseIntegrator.mecanumForward(TRACK_WIDTH, LATERAL_MULTIPLIER,
+                d[0] * IN_PER_TICK, d[1] * IN_PER_TICK, d[2] * IN_PER_TICK, d[3] * IN_PER_TICK, inc);
+        PoseIntegrator.mecanumForward(TRACK_WIDTH, LATERAL_MULTIPLIER,
+                v[0] * IN_PER_TICK, v[1] * IN_PER_TICK, v[2] * IN_PER_TICK, v[3] * IN_PER_TICK, vel);
+        pose.plus(inc[0], inc[1], inc[2]);
+    }
+}
@@ -0,0 +1,129 @@
+package org.firstinspires.ftc.teamcode.tuning;
+
+import com.acmerobotics.roadrunner.AngularVelConstraint;
+import com.acmerobotics.roadrunner.MecanumKinematics;
+import com.acmerobotics.roadrunner.MinVelConstraint;
+import com.acmerobotics.roadrunner.NullAction;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.ProfileAccelConstraint;
+import com.acmerobotics.roadrunner.ProfileParams;
+import com.acmerobotics.roadrunner.TimeTrajectory;
+import com.acmerobotics.roadrunner.TrajectoryActionBuilder;
+import com.acmerobotics.roadrunner.TrajectoryBuilderParams;
+import com.acmerobotics.roadrunner.TurnConstraints;
+import com.acmerobotics.roadrunner.Vector2d;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+
+import org.firstinspires.ftc.teamcode.MecanumDrive;
+import org.firstinspires.ftc.teamcode.TargetState;
+import org.firstinspires.ftc.teamcode.TrajectorySamples;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times one control tick's target evaluation, TimeTrajectory.get against a TrajectorySamples
+ * lookup, on a multi-spline path, and checks the table's midpoint error estimate against a
+ * dense sweep of the exact trajectory. Needs no hardware.
+ */
+public final class SampleTableBenchmark extends LinearOpMode {
+    private static final int QUERIES = 20_000;
+    private static final int ROUNDS = 5;
+    private static final int CHECKS_PER_STEP = 10;
+
+    // realistic constraints independent of the robot's tuning
+    private static final double TRACK_WIDTH = 14.5;
+    private static final double MAX_WHEEL_VEL = 50;
+
+    @Override
+    public void runOpMode() throws InterruptedException {
+        telemetry.addLine("press start to run");
+        telemetry.update();
+        waitForStart();
+
+        TimeTrajectory trajectory = buildTrajectory();
+        double dt = MecanumDrive.PARAMS.sampleDt;
+
+        long t0 = System.nanoTime();
+        TrajectorySamples samples = TrajectorySamples.of(trajectory, dt);
+        double buildMs = (System.nanoTime() - t0) / 1e6;
+
+        Random random = new Random(16028);
+        double[] times = new double[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            times[i] = random.nextDouble() * trajectory.duration;
+        }
+
+        // per-tick cost; the first rounds warm up the JIT, the last one is reported
+        TargetState target = new TargetState();
+        double exactNanos = 0, tableNanos = 0;
+        for (int round = 0; round < ROUNDS && opModeIsActive(); round++) {
+            long t = System.nanoTime();
+            for (double time : times) {
+                target.set(trajectory.get(time));
+            }
+            exactNanos = (double) (System.nanoTime() - t) / QUERIES;
+
+            t = System.nanoTime();
+            for (double time : times) {
+                samples.get(time, target);
+            }
+            tableNanos = (double) (System.nanoTime() - t) / QUERIES;
+        }
+
+        // dense error sweep against the exact trajectory
+        TargetState exact = new TargetState();
+        double position = 0, heading = 0, velocity = 0;
+        int n = samples.count * CHECKS_PER_STEP;
+        for (int i = 0; i <= n && opModeIsActive(); i++) {
+            double t = trajectory.duration * i / n;
+            exact.set(trajectory.get(t));
+            samples.get(t, target);
+            position = Math.max(position, Math.hypot(exact.x - target.x, exact.y - target.y));
+            heading = Math.max(heading, Math.abs(Math.IEEEremainder(exact.heading - target.heading, 2 * Math.PI)));
+            velocity = Math.max(velocity, TrajectorySamples.velocityError(exact, target));
+        }
+
+        telemetry.addData("duration (s)", trajectory.duration);
+        telemetry.addData("rows", samples.count);
+        telemetry.addData("table build (ms)", buildMs);
+        telemetry.addData("table size (KiB)", samples.count * TrajectorySamples.STRIDE * 8 / 1024.0);
+        telemetry.addData("TimeTrajectory.get (ns/tick)", exactNanos);
+        telemetry.addData("table lookup (ns/tick)", tableNanos);
+        telemetry.addData("speedup", exactNanos / tableNanos);
+        telemetry.addData("position error estimate / measured (in)", "%.2e / %.2e", samples.maxPositionError, position);
+        telemetry.addData("heading error estimate / measured (rad)", "%.2e / %.2e", samples.maxHeadingError, heading);
+        telemetry.addData("velocity error estimate / measured (in/s, rad/s)", "%.2e / %.2e", samples.maxVelocityError, velocity);
+        telemetry.update();
+
+        while (opModeIsActive()) {
+            idle();
+        }
+    }
+
+    private static TimeTrajectory buildTrajectory() {
+        MecanumKinematics kinematics = new MecanumKinematics(TRACK_WIDTH, 1);
+        final List<TimeTrajectory> trajectories = new ArrayList<>();
+        new TrajectoryActionBuilder(
+                turn -> new NullAction(),
+                trajectory -> {
+                    trajectories.add(trajectory);
+                    return new NullAction();
+                },
+                new TrajectoryBuilderParams(1e-6, new ProfileParams(0.25, 0.1, 1e-2)),
+                new Pose2d(0, 0, 0), 0.0,
+                new TurnConstraints(Math.PI, -Math.PI, Math.PI),
+                new MinVelConstraint(Arrays.asList(
+                        kinematics.new WheelVelConstraint(MAX_WHEEL_VEL),
+                        new AngularVelConstraint(Math.PI))),
+                new ProfileAccelConstraint(-30, 50))
+                .splineTo(new Vector2d(30, 30), Math.PI / 2)
+                .splineTo(new Vector2d(0, 60), Math.PI)
+                .splineToLinearHeading(new Pose2d(-30, 30, 0), -Math.PI / 2)
+                .splineTo(new Vector2d(0, 0), 0)
+                .build();
+        return trajectories.get(0);
+    }
+}
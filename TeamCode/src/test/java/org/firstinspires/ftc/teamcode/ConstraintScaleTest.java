@@ -0,0 +1,77 @@
+package org.firstinspires.ftc.teamcode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Puts the scaled velocity and acceleration limits together into the feedforward model
+ * kS + kV * v + kA * a and checks the result fits in the sagged battery voltage, from a weak
+ * battery to a fresh one.
+ */
+public final class ConstraintScaleTest {
+    private MecanumDrive.Params savedParams;
+
+    @Before
+    public void setUp() {
+        savedParams = MecanumDrive.PARAMS;
+
+        MecanumDrive.Params params = new MecanumDrive.Params();
+        params.inPerTick = 0.002;
+        params.kS = 0.8;
+        params.kV = 0.00028; // 0.14 V per in/s
+        params.kA = 0.00008; // 0.04 V per in/s^2
+        params.maxWheelVel = 50;
+        params.maxProfileAccel = 50;
+        params.voltageSag = 1.0;
+        MecanumDrive.PARAMS = params;
+    }
+
+    @After
+    public void tearDown() {
+        MecanumDrive.PARAMS = savedParams;
+    }
+
+    @Test
+    public void peakVelocityAndAccelerationFitTogether() {
+        MecanumDrive.Params p = MecanumDrive.PARAMS;
+        for (double voltage = 8; voltage <= 14; voltage += 0.05) {
+            double scale = MecanumDrive.constraintScale(voltage);
+            double demand = p.kS
+                    + p.kV / p.inPerTick * p.maxWheelVel * scale
+                    + p.kA / p.inPerTick * p.maxProfileAccel * scale;
+            assertTrue(voltage + " V: scale " + scale + " needs " + demand + " V",
+                    demand <= voltage - p.voltageSag + 1e-9);
+        }
+    }
+
+    @Test
+    public void freshBatteryRunsFasterUpToTheCap() {
+        // 9 V of feedforward at the tuned limits; 12.6 V leaves 10.8 V after kS and sag
+        assertEquals(1.2, MecanumDrive.constraintScale(12.6), 1e-9);
+        // 13.6 V would allow 1.31, over the 1.2 default cap
+        assertEquals(MecanumDrive.PARAMS.maxConstraintScale, MecanumDrive.constraintScale(13.6), 1e-9);
+    }
+
+    @Test
+    public void weakBatteryIsNotRaisedToTheWarningLevel() {
+        // 5.4 V for the drive at 7.2 V, a scale of 0.6, below lowConstraintScale
+        double scale = MecanumDrive.constraintScale(7.2);
+        assertTrue(scale < MecanumDrive.PARAMS.lowConstraintScale);
+        assertEquals(0.6, scale, 1e-9);
+    }
+
+    @Test
+    public void quantizesDown() {
+        // 10 V after kS and sag over 9 V of feedforward is 1.111...; rounding up would saturate
+        assertEquals(1.1, MecanumDrive.constraintScale(11.8), 1e-9);
+    }
+
+    @Test
+    public void unusableReadingKeepsTunedLimits() {
+        assertEquals(1, MecanumDrive.constraintScale(0), 0);
+    }
+}
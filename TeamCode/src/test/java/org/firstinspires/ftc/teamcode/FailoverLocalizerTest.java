@@ -0,0 +1,187 @@
+package org.firstinspires.ftc.teamcode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import com.acmerobotics.roadrunner.Pose2d;
+import com.qualcomm.hardware.gobilda.GoBildaPinpointDriver;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+import com.qualcomm.robotcore.hardware.I2cDeviceSynchSimple;
+
+import org.firstinspires.ftc.teamcode.replay.ReplayEncoder;
+import org.firstinspires.ftc.teamcode.replay.ReplayImu;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fails a PinpointLocalizer over to an EkfLocalizer. The Pinpoint is the real driver on a
+ * stand-in I2C client that serves its 40-byte bulk read (status, loop time, two encoders, then
+ * x, y, heading and their velocities as little-endian floats in mm and rad); the EKF runs on
+ * the replay encoders and IMU.
+ */
+public final class FailoverLocalizerTest {
+    private static final int READY = 1, NOT_READY = 0;
+
+    // the Pinpoint sees the robot 5 in to the left and turned 0.3 rad relative to the wheels
+    private static final double HEADING = 0.3, Y = 5;
+    private static final int TICKS_PER_IN = 500;
+
+    private MecanumDrive.Params savedParams;
+
+    private final ByteBuffer bulk = ByteBuffer.allocate(PinpointLocalizer.BYTES_PER_UPDATE)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    private final ReplayEncoder[] wheels = new ReplayEncoder[4];
+
+    private PinpointLocalizer pinpoint;
+    private EkfLocalizer ekf;
+    private FailoverLocalizer localizer;
+
+    @Before
+    public void setUp() {
+        savedParams = MecanumDrive.PARAMS;
+        MecanumDrive.Params params = new MecanumDrive.Params();
+        params.inPerTick = 1.0 / TICKS_PER_IN;
+        params.lateralInPerTick = params.inPerTick;
+        params.trackWidthTicks = 7000;
+        params.imuReadPeriodMs = 0;
+        MecanumDrive.PARAMS = params;
+
+        HardwareMap hardwareMap = new HardwareMap((Context) null, null);
+        hardwareMap.put("pinpoint", new GoBildaPinpointDriver(standInI2c(), true));
+        pinpoint = new PinpointLocalizer(hardwareMap, params.inPerTick, new Pose2d(0, 0, 0));
+
+        ReplayImu imu = new ReplayImu();
+        imu.set(imuReading());
+        for (int i = 0; i < 4; i++) {
+            wheels[i] = new ReplayEncoder();
+            wheels[i].set(pair(0));
+        }
+        ekf = new EkfLocalizer(new MecanumDrive.DriveLocalizer(wheels[0], wheels[1], wheels[2], wheels[3],
+                imu, MecanumDrive.newKinematics(), new Pose2d(0, 0, 0)));
+
+        localizer = new FailoverLocalizer(pinpoint, ekf);
+    }
+
+    @After
+    public void tearDown() {
+        MecanumDrive.PARAMS = savedParams;
+    }
+
+    @Test
+    public void continuesOnEkfWithoutJumpOrReset() {
+        // drive straight ahead 1 in per cycle; the wheels only start counting after their
+        // first update, so the EKF ends up 1 in short of the Pinpoint
+        int cycles = 20;
+        for (int i = 1; i <= cycles; i++) {
+            step(i, READY);
+            assertFalse(localizer.isOnSecondary());
+            assertPose(expected(i), localizer.getPose());
+        }
+
+        // the EKF kept its own frame and its covariance instead of being reset to the Pinpoint
+        Pose2d own = ekf.getPose();
+        assertEquals(cycles - 1, own.position.x, 1e-9);
+        assertEquals(0, own.position.y, 1e-9);
+        assertTrue(ekf.getXStd() > 0);
+
+        // the Pinpoint drops out; its frozen (here zeroed) readings must be ignored and the
+        // pose carries on 1 in per cycle from where it was
+        for (int i = cycles + 1; i <= cycles + 10; i++) {
+            step(i, NOT_READY);
+            assertTrue(localizer.isOnSecondary());
+            assertPose(expected(i), localizer.getPose());
+        }
+        assertEquals(1, localizer.getFailovers());
+        assertEquals(cycles + 9, ekf.getPose().position.x, 1e-9);
+    }
+
+    private void step(int i, int status) {
+        for (ReplayEncoder wheel : wheels) {
+            wheel.set(pair(i * TICKS_PER_IN));
+        }
+
+        Pose2d p = status == READY ? expected(i) : new Pose2d(0, 0, 0);
+        bulk.clear();
+        bulk.putInt(status);
+        bulk.putInt(1000); // loop time (us)
+        bulk.putInt(0);
+        bulk.putInt(0);
+        bulk.putFloat((float) (p.position.x * 25.4));
+        bulk.putFloat((float) (p.position.y * 25.4));
+        bulk.putFloat((float) p.heading.toDouble());
+        bulk.putFloat(0);
+        bulk.putFloat(0);
+        bulk.putFloat(0);
+
+        localizer.update();
+    }
+
+    // i in along HEADING from (0, Y)
+    private static Pose2d expected(int i) {
+        return new Pose2d(i * Math.cos(HEADING), Y + i * Math.sin(HEADING), HEADING);
+    }
+
+    private static void assertPose(Pose2d expected, Pose2d actual) {
+        // the Pinpoint reports floats in mm
+        assertEquals(expected.position.x, actual.position.x, 1e-3);
+        assertEquals(expected.position.y, actual.position.y, 1e-3);
+        assertEquals(expected.heading.toDouble(), actual.heading.toDouble(), 1e-6);
+    }
+
+    private static Map<String, Object> pair(int position) {
+        Map<String, Object> pair = new HashMap<>();
+        pair.put("position", position);
+        pair.put("velocity", 0);
+        return pair;
+    }
+
+    private static Map<String, Object> imuReading() {
+        Map<String, Object> message = new HashMap<>();
+        message.put("timestamp", 0L);
+        message.put("yaw", 0.0);
+        message.put("pitch", 0.0);
+        message.put("roll", 0.0);
+        return message;
+    }
+
+    // serves the bulk buffer to every read and ignores writes
+    private I2cDeviceSynchSimple standInI2c() {
+        return (I2cDeviceSynchSimple) Proxy.newProxyInstance(I2cDeviceSynchSimple.class.getClassLoader(),
+                new Class<?>[] { I2cDeviceSynchSimple.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "Pinpoint stand-in";
+                    }
+                    Class<?> type = method.getReturnType();
+                    if (type == byte[].class) {
+                        byte[] data = new byte[(Integer) args[args.length - 1]];
+                        System.arraycopy(bulk.array(), 0, data, 0, Math.min(data.length, bulk.capacity()));
+                        return data;
+                    } else if (type == boolean.class) {
+                        return false;
+                    } else if (type == byte.class) {
+                        return (byte) 0;
+                    } else if (type == int.class) {
+                        return 0;
+                    } else if (type == long.class) {
+                        return 0L;
+                    }
+                    return null;
+                });
+    }
+}
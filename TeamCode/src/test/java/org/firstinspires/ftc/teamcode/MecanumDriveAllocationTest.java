@@ -0,0 +1,203 @@
+package org.firstinspires.ftc.teamcode;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import android.content.Context;
+
+import com.acmerobotics.dashboard.telemetry.TelemetryPacket;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+import com.acmerobotics.roadrunner.Vector2d;
+import com.qualcomm.robotcore.hardware.ColorSensor;
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.DcMotorEx;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+import com.qualcomm.robotcore.hardware.Servo;
+import com.qualcomm.robotcore.hardware.VoltageSensor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+
+/**
+ * Counts what one FollowSamplesAction.run() tick allocates, on a MecanumDrive built from
+ * stand-in hardware and a stand-in localizer. The localizer jumps between two poses, so every
+ * tick writes all four wheels through the write caches. The only allocations allowed are the
+ * boxed doubles the action puts on the telemetry packet and the stand-in motors' own argument
+ * boxing. Not covered: DriveLocalizer (its encoder reads and log message allocate), render
+ * frames, and FollowTrajectoryAction/TurnAction, whose RoadRunner get() allocates.
+ */
+public final class MecanumDriveAllocationTest {
+    private static final int WARMUP_TICKS = 20_000;
+    private static final int TICKS = 20_000;
+
+    // x, y, heading and the three errors; a boxed Double is 16 bytes, 24 without
+    // compressed class pointers
+    private static final int TELEMETRY_VALUES = 6;
+    private static final double TELEMETRY_BYTES_PER_TICK = TELEMETRY_VALUES * 24;
+    // a proxy call boxes its argument into an Object[1]; at most 24 + 24 bytes
+    private static final double PROXY_BYTES_PER_WRITE = 48;
+
+    // setPower calls the stand-in motors have seen; only the test thread writes
+    private static long motorWrites;
+
+    private MecanumDrive.Params savedParams;
+    private boolean savedRender;
+    private MecanumDrive drive;
+
+    @Before
+    public void setUp() {
+        savedParams = MecanumDrive.PARAMS;
+        savedRender = FieldRenderer.PARAMS.render;
+
+        // realistic tuning so the controller does real work
+        MecanumDrive.Params params = new MecanumDrive.Params();
+        params.inPerTick = 0.002;
+        params.lateralInPerTick = 0.002;
+        params.trackWidthTicks = 7000;
+        params.kS = 0.1;
+        params.kV = 0.0004;
+        params.kA = 0.00005;
+        params.axialGain = 5;
+        params.lateralGain = 5;
+        params.headingGain = 5;
+        MecanumDrive.PARAMS = params;
+        FieldRenderer.PARAMS.render = false;
+
+        HardwareMap hardwareMap = new HardwareMap((Context) null, null);
+        for (String name : new String[] { "leftFront", "leftBack", "rightBack", "rightFront" }) {
+            hardwareMap.put(name, standIn(DcMotorEx.class));
+        }
+        hardwareMap.put("intake", standIn(DcMotor.class));
+        hardwareMap.put("launcher", standIn(DcMotor.class));
+        hardwareMap.put("paddleOne", standIn(Servo.class));
+        hardwareMap.put("paddle1", standIn(ColorSensor.class));
+        hardwareMap.voltageSensor.put("Control Hub", standIn(VoltageSensor.class));
+
+        drive = new MecanumDrive(hardwareMap, new Pose2d(0, 0, 0), new StandInLocalizer());
+    }
+
+    @After
+    public void tearDown() {
+        if (drive != null) {
+            drive.close();
+        }
+        MecanumDrive.PARAMS = savedParams;
+        FieldRenderer.PARAMS.render = savedRender;
+    }
+
+    @Test
+    public void followSamplesRunAllocatesOnlyTelemetry() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue("thread allocation counting not supported", threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        MecanumDrive.FollowSamplesAction action = drive.new FollowSamplesAction(straightLine());
+        TelemetryPacket p = new TelemetryPacket();
+
+        // the first pass starts the voltage worker, fills the caches and lets the JIT settle
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            assertTrue(action.run(p));
+        }
+
+        long writesBefore = motorWrites;
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < TICKS; i++) {
+            action.run(p);
+        }
+        double bytesPerTick = (double) (threads.getThreadAllocatedBytes(thread) - before) / TICKS;
+        double writesPerTick = (double) (motorWrites - writesBefore) / TICKS;
+
+        assertTrue("only " + writesPerTick + " motor writes/tick", writesPerTick >= 4);
+        double allowed = TELEMETRY_BYTES_PER_TICK + writesPerTick * PROXY_BYTES_PER_WRITE;
+        assertTrue("run() allocated " + bytesPerTick + " bytes/tick, allowed " + allowed,
+                bytesPerTick <= allowed);
+    }
+
+    // 10 in/s along x for ten minutes, far longer than the test runs
+    private static TrajectorySamples straightLine() {
+        double dt = 0.1, duration = 600;
+        int n = (int) Math.round(duration / dt) + 1;
+        double[] rows = new double[n * TrajectorySamples.STRIDE];
+        for (int i = 0; i < n; i++) {
+            int k = i * TrajectorySamples.STRIDE;
+            rows[k] = 10 * i * dt;
+            rows[k + 3] = 10;
+        }
+        return new TrajectorySamples(false, dt, duration, rows, 0, 0, 0);
+    }
+
+    // 1 in left of the start and alternately 1 in and 1.5 in behind it, so the axial error
+    // (and with it every wheel power) changes by more than powerEpsilon each tick; allocates
+    // nothing
+    private static final class StandInLocalizer implements Localizer {
+        private final PoseVelocity2d velocity = new PoseVelocity2d(new Vector2d(9, 0), 0);
+        private final Pose2d near = new Pose2d(-1, 1, 0), far = new Pose2d(-1.5, 1, 0);
+        private Pose2d pose = near;
+
+        @Override
+        public void setPose(Pose2d pose) {
+            this.pose = pose;
+        }
+
+        @Override
+        public Pose2d getPose() {
+            return pose;
+        }
+
+        @Override
+        public PoseVelocity2d update() {
+            pose = pose == near ? far : near;
+            return velocity;
+        }
+    }
+
+    // a device whose methods do nothing and return zero, except a 12 V battery; counts setPower
+    @SuppressWarnings("unchecked")
+    private static <T> T standIn(Class<T> type) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return type.getSimpleName() + " stand-in";
+                        case "getVoltage":
+                            return 12.0;
+                        case "setPower":
+                            motorWrites++;
+                            return null;
+                    }
+                    return zero(method.getReturnType());
+                });
+    }
+
+    private static Object zero(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == double.class) {
+            return 0.0;
+        } else if (type == float.class) {
+            return 0f;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == short.class) {
+            return (short) 0;
+        } else if (type == byte.class) {
+            return (byte) 0;
+        } else if (type == char.class) {
+            return '\0';
+        }
+        return null;
+    }
+}
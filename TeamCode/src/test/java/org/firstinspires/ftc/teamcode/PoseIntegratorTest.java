@@ -0,0 +1,257 @@
+package org.firstinspires.ftc.teamcode;
+
+import static org.junit.Assert.assertEquals;
+
+import com.acmerobotics.roadrunner.DualNum;
+import com.acmerobotics.roadrunner.MecanumKinematics;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+import com.acmerobotics.roadrunner.Rotation2d;
+import com.acmerobotics.roadrunner.Time;
+import com.acmerobotics.roadrunner.Twist2d;
+import com.acmerobotics.roadrunner.Twist2dDual;
+import com.acmerobotics.roadrunner.Vector2dDual;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.teamcode.replay.ReplayEncoder;
+import org.firstinspires.ftc.teamcode.replay.ReplayImu;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * PoseIntegrator must match RoadRunner's kinematics + Pose2d.plus bit for bit, since
+ * DriveLocalizer and the dead-wheel localizers swapped their DualNum/Twist2dDual code for it.
+ * The dead-wheel cases run the real localizers on stand-in encoders and IMU against the
+ * update() code they replaced.
+ */
+public final class PoseIntegratorTest {
+    private static final int STEPS = 20_000;
+
+    // arbitrary but realistic drive constants; equivalence doesn't depend on tuning
+    private static final double IN_PER_TICK = 0.0023;
+    private static final double TRACK_WIDTH = 14.5;
+    private static final double LATERAL_MULTIPLIER = 1.1;
+
+    private final MecanumKinematics kinematics = new MecanumKinematics(TRACK_WIDTH, LATERAL_MULTIPLIER);
+
+    @Test
+    public void matchesRoadRunnerBitForBit() {
+        Random random = new Random(16028);
+        int[] d = new int[4];
+        int[] v = new int[4];
+
+        Pose2d rrPose = new Pose2d(12, -30, 1.2);
+        PoseIntegrator pose = new PoseIntegrator(rrPose);
+        double[] inc = new double[3], vel = new double[3];
+        for (int i = 0; i < STEPS; i++) {
+            for (int j = 0; j < 4; j++) {
+                d[j] = random.nextInt(401) - 200;
+                v[j] = random.nextInt(6001) - 3000;
+            }
+
+            // the code DriveLocalizer.update() used before PoseIntegrator
+            Twist2dDual<Time> twist = kinematics.forward(new MecanumKinematics.WheelIncrements<>(
+                    new DualNum<Time>(new double[] { d[0], v[0] }).times(IN_PER_TICK),
+                    new DualNum<Time>(new double[] { d[1], v[1] }).times(IN_PER_TICK),
+                    new DualNum<Time>(new double[] { d[2], v[2] }).times(IN_PER_TICK),
+                    new DualNum<Time>(new double[] { d[3], v[3] }).times(IN_PER_TICK)
+            ));
+            PoseVelocity2d rrVel = twist.velocity().value();
+            rrPose = rrPose.plus(new Twist2d(twist.line.value(), twist.angle.value()));
+
+            // the code DriveLocalizer.update() uses now
+            PoseIntegrator.mecanumForward(TRACK_WIDTH, LATERAL_MULTIPLIER,
+                    d[0] * IN_PER_TICK, d[1] * IN_PER_TICK, d[2] * IN_PER_TICK, d[3] * IN_PER_TICK, inc);
+            PoseIntegrator.mecanumForward(TRACK_WIDTH, LATERAL_MULTIPLIER,
+                    v[0] * IN_PER_TICK, v[1] * IN_PER_TICK, v[2] * IN_PER_TICK, v[3] * IN_PER_TICK, vel);
+            pose.plus(inc[0], inc[1], inc[2]);
+
+            Pose2d fastPose = pose.getPose();
+            String step = "step " + i;
+            assertSameBits(step + " x", rrPose.position.x, fastPose.position.x);
+            assertSameBits(step + " y", rrPose.position.y, fastPose.position.y);
+            assertSameBits(step + " heading real", rrPose.heading.real, fastPose.heading.real);
+            assertSameBits(step + " heading imag", rrPose.heading.imag, fastPose.heading.imag);
+            assertSameBits(step + " vx", rrVel.linearVel.x, vel[0]);
+            assertSameBits(step + " vy", rrVel.linearVel.y, vel[1]);
+            assertSameBits(step + " omega", rrVel.angVel, vel[2]);
+        }
+    }
+
+    @Test
+    public void twoDeadWheelMatchesRoadRunnerBitForBit() {
+        TwoDeadWheelLocalizer.Params saved = TwoDeadWheelLocalizer.PARAMS;
+        TwoDeadWheelLocalizer.Params params = new TwoDeadWheelLocalizer.Params();
+        params.parYTicks = -2100.5;
+        params.perpXTicks = 1650.25;
+        TwoDeadWheelLocalizer.PARAMS = params;
+        try {
+            Random random = new Random(16028);
+            ReplayEncoder par = new ReplayEncoder(), perp = new ReplayEncoder();
+            ReplayImu imu = new ReplayImu();
+            Pose2d rrPose = new Pose2d(12, -30, 1.2);
+            TwoDeadWheelLocalizer localizer = new TwoDeadWheelLocalizer(par, perp, imu, IN_PER_TICK, rrPose);
+
+            int parPos = 0, perpPos = 0;
+            double yaw = 0.3;
+            imu.set(imuReading(yaw, 0));
+            localizer.update();
+            Rotation2d lastHeading = heading(imu);
+
+            for (int i = 0; i < STEPS; i++) {
+                int parDelta = random.nextInt(401) - 200, perpDelta = random.nextInt(401) - 200;
+                int parVel = random.nextInt(6001) - 3000, perpVel = random.nextInt(6001) - 3000;
+                parPos += parDelta;
+                perpPos += perpDelta;
+                yaw += (random.nextDouble() - 0.5) * 0.1;
+                par.set(pair(parPos, parVel));
+                perp.set(pair(perpPos, perpVel));
+                // rates within +-1.5 rad/s never jump by pi between reads, so the localizer's
+                // wrap correction stays out of it
+                imu.set(imuReading(yaw, (random.nextDouble() - 0.5) * 3));
+
+                PoseVelocity2d fastVel = localizer.update();
+
+                // the localizer's unchanged IMU preprocessing
+                Rotation2d heading = heading(imu);
+                double headingDelta = heading.minus(lastHeading);
+                double headingVel = (float) Math.toRadians(
+                        imu.getRobotAngularVelocity(AngleUnit.DEGREES).zRotationRate);
+                lastHeading = heading;
+
+                // the code TwoDeadWheelLocalizer.update() used before PoseIntegrator
+                Twist2dDual<Time> twist = new Twist2dDual<>(
+                        new Vector2dDual<>(
+                                new DualNum<Time>(new double[] {
+                                        parDelta - params.parYTicks * headingDelta,
+                                        parVel - params.parYTicks * headingVel,
+                                }).times(IN_PER_TICK),
+                                new DualNum<Time>(new double[] {
+                                        perpDelta - params.perpXTicks * headingDelta,
+                                        perpVel - params.perpXTicks * headingVel,
+                                }).times(IN_PER_TICK)
+                        ),
+                        new DualNum<>(new double[] {
+                                headingDelta,
+                                headingVel,
+                        })
+                );
+                rrPose = rrPose.plus(twist.value());
+
+                assertSameState("step " + i, rrPose, twist.velocity().value(), localizer.getPose(), fastVel);
+            }
+        } finally {
+            TwoDeadWheelLocalizer.PARAMS = saved;
+        }
+    }
+
+    @Test
+    public void threeDeadWheelMatchesRoadRunnerBitForBit() {
+        ThreeDeadWheelLocalizer.Params saved = ThreeDeadWheelLocalizer.PARAMS;
+        ThreeDeadWheelLocalizer.Params params = new ThreeDeadWheelLocalizer.Params();
+        params.par0YTicks = 3200.75;
+        params.par1YTicks = -3150.5;
+        params.perpXTicks = 1650.25;
+        ThreeDeadWheelLocalizer.PARAMS = params;
+        try {
+            Random random = new Random(16028);
+            ReplayEncoder par0 = new ReplayEncoder(), par1 = new ReplayEncoder(), perp = new ReplayEncoder();
+            Pose2d rrPose = new Pose2d(12, -30, 1.2);
+            ThreeDeadWheelLocalizer localizer = new ThreeDeadWheelLocalizer(par0, par1, perp, IN_PER_TICK, rrPose);
+            localizer.update();
+
+            int par0Pos = 0, par1Pos = 0, perpPos = 0;
+            for (int i = 0; i < STEPS; i++) {
+                int par0PosDelta = random.nextInt(401) - 200;
+                int par1PosDelta = random.nextInt(401) - 200;
+                int perpPosDelta = random.nextInt(401) - 200;
+                int par0Vel = random.nextInt(6001) - 3000;
+                int par1Vel = random.nextInt(6001) - 3000;
+                int perpVel = random.nextInt(6001) - 3000;
+                par0Pos += par0PosDelta;
+                par1Pos += par1PosDelta;
+                perpPos += perpPosDelta;
+                par0.set(pair(par0Pos, par0Vel));
+                par1.set(pair(par1Pos, par1Vel));
+                perp.set(pair(perpPos, perpVel));
+
+                PoseVelocity2d fastVel = localizer.update();
+
+                // the code ThreeDeadWheelLocalizer.update() used before PoseIntegrator
+                Twist2dDual<Time> twist = new Twist2dDual<>(
+                        new Vector2dDual<>(
+                                new DualNum<Time>(new double[] {
+                                        (params.par0YTicks * par1PosDelta - params.par1YTicks * par0PosDelta) / (params.par0YTicks - params.par1YTicks),
+                                        (params.par0YTicks * par1Vel - params.par1YTicks * par0Vel) / (params.par0YTicks - params.par1YTicks),
+                                }).times(IN_PER_TICK),
+                                new DualNum<Time>(new double[] {
+                                        (params.perpXTicks / (params.par0YTicks - params.par1YTicks) * (par1PosDelta - par0PosDelta) + perpPosDelta),
+                                        (params.perpXTicks / (params.par0YTicks - params.par1YTicks) * (par1Vel - par0Vel) + perpVel),
+                                }).times(IN_PER_TICK)
+                        ),
+                        new DualNum<>(new double[] {
+                                (par0PosDelta - par1PosDelta) / (params.par0YTicks - params.par1YTicks),
+                                (par0Vel - par1Vel) / (params.par0YTicks - params.par1YTicks),
+                        })
+                );
+                rrPose = rrPose.plus(twist.value());
+
+                assertSameState("step " + i, rrPose, twist.velocity().value(), localizer.getPose(), fastVel);
+            }
+        } finally {
+            ThreeDeadWheelLocalizer.PARAMS = saved;
+        }
+    }
+
+    @Test
+    public void setResetsToThePose() {
+        PoseIntegrator pose = new PoseIntegrator(new Pose2d(0, 0, 0));
+        pose.plus(10, 2, 0.3);
+        pose.set(new Pose2d(-4, 7, -1));
+
+        assertEquals(-4, pose.getX(), 0);
+        assertEquals(7, pose.getY(), 0);
+        assertEquals(-1, pose.getHeading(), 1e-12);
+    }
+
+    private static Map<String, Object> pair(int position, int velocity) {
+        Map<String, Object> pair = new HashMap<>();
+        pair.put("position", position);
+        pair.put("velocity", velocity);
+        return pair;
+    }
+
+    private static Map<String, Object> imuReading(double yaw, double zRotationRate) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("timestamp", 0L);
+        message.put("yaw", yaw);
+        message.put("pitch", 0.0);
+        message.put("roll", 0.0);
+        message.put("xRotationRate", 0.0);
+        message.put("yRotationRate", 0.0);
+        message.put("zRotationRate", zRotationRate);
+        return message;
+    }
+
+    private static Rotation2d heading(ReplayImu imu) {
+        return Rotation2d.exp(imu.getRobotYawPitchRollAngles().getYaw(AngleUnit.RADIANS));
+    }
+
+    private static void assertSameState(String step, Pose2d rrPose, PoseVelocity2d rrVel,
+                                        Pose2d fastPose, PoseVelocity2d fastVel) {
+        assertSameBits(step + " x", rrPose.position.x, fastPose.position.x);
+        assertSameBits(step + " y", rrPose.position.y, fastPose.position.y);
+        assertSameBits(step + " heading real", rrPose.heading.real, fastPose.heading.real);
+        assertSameBits(step + " heading imag", rrPose.heading.imag, fastPose.heading.imag);
+        assertSameBits(step + " vx", rrVel.linearVel.x, fastVel.linearVel.x);
+        assertSameBits(step + " vy", rrVel.linearVel.y, fastVel.linearVel.y);
+        assertSameBits(step + " omega", rrVel.angVel, fastVel.angVel);
+    }
+
+    private static void assertSameBits(String what, double expected, double actual) {
+        assertEquals(what, Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+    }
+}
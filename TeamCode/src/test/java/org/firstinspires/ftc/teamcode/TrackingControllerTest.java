@@ -0,0 +1,129 @@
+package org.firstinspires.ftc.teamcode;
+
+import static org.junit.Assert.assertEquals;
+
+import com.acmerobotics.roadrunner.DualNum;
+import com.acmerobotics.roadrunner.HolonomicController;
+import com.acmerobotics.roadrunner.MecanumKinematics;
+import com.acmerobotics.roadrunner.MotorFeedforward;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.Pose2dDual;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+import com.acmerobotics.roadrunner.PoseVelocity2dDual;
+import com.acmerobotics.roadrunner.Rotation2dDual;
+import com.acmerobotics.roadrunner.Time;
+import com.acmerobotics.roadrunner.Vector2d;
+import com.acmerobotics.roadrunner.Vector2dDual;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that TrackingController gives the wheel powers of the RoadRunner pipeline it replaced
+ * in MecanumDrive: HolonomicController.compute, MecanumKinematics.inverse and
+ * MotorFeedforward.compute, on targets and actual states that exercise every term.
+ */
+public final class TrackingControllerTest {
+    private static final double VOLTAGE = 12.6;
+
+    private MecanumDrive.Params savedParams;
+    private MecanumKinematics kinematics;
+    private TrackingController controller;
+
+    @Before
+    public void setUp() {
+        savedParams = MecanumDrive.PARAMS;
+
+        MecanumDrive.Params params = new MecanumDrive.Params();
+        params.inPerTick = 0.002;
+        params.lateralInPerTick = 0.0017;
+        params.trackWidthTicks = 7000;
+        params.kS = 0.1;
+        params.kV = 0.0004;
+        params.kA = 0.00005;
+        params.axialGain = 5;
+        params.lateralGain = 4;
+        params.headingGain = 6;
+        params.axialVelGain = 0.5;
+        params.lateralVelGain = 0.4;
+        params.headingVelGain = 0.3;
+        MecanumDrive.PARAMS = params;
+
+        kinematics = MecanumDrive.newKinematics();
+        controller = new TrackingController(kinematics.trackWidth, kinematics.lateralMultiplier);
+    }
+
+    @After
+    public void tearDown() {
+        MecanumDrive.PARAMS = savedParams;
+    }
+
+    @Test
+    public void matchesRoadRunnerAtRest() {
+        check(target(0, 0, 0, 0, 0, 0, 0, 0, 0),
+                new Pose2d(0, 0, 0), new PoseVelocity2d(new Vector2d(0, 0), 0));
+    }
+
+    @Test
+    public void matchesRoadRunnerOnAStraightLine() {
+        check(target(10, 2, 0, 30, 0, 0, 20, 0, 0),
+                new Pose2d(9.5, 2.3, 0.02), new PoseVelocity2d(new Vector2d(28, 0.5), 0.01));
+    }
+
+    @Test
+    public void matchesRoadRunnerOnACurve() {
+        check(target(-24, 36, 2.4, -18, 12, 1.2, 5, -8, -0.7),
+                new Pose2d(-23, 35, 2.5), new PoseVelocity2d(new Vector2d(20, -3), 1.0));
+    }
+
+    @Test
+    public void matchesRoadRunnerAcrossTheHeadingWrap() {
+        check(target(40, -40, Math.PI - 0.05, 0, 0, 2, 0, 0, 3),
+                new Pose2d(40.2, -39.9, -Math.PI + 0.05), new PoseVelocity2d(new Vector2d(-1, 0.5), 1.8));
+    }
+
+    @Test
+    public void matchesRoadRunnerWhileBraking() {
+        // hard deceleration, so wheel accelerations oppose their velocities
+        check(target(5, 5, -1, 2, -3, -0.4, -40, 35, 2),
+                new Pose2d(6, 4, -0.9), new PoseVelocity2d(new Vector2d(-3, 2), 0.2));
+    }
+
+    private void check(Pose2dDual<Time> txWorldTarget, Pose2d actual, PoseVelocity2d robotVelRobot) {
+        MecanumDrive.Params params = MecanumDrive.PARAMS;
+
+        PoseVelocity2dDual<Time> command = new HolonomicController(
+                params.axialGain, params.lateralGain, params.headingGain,
+                params.axialVelGain, params.lateralVelGain, params.headingVelGain
+        )
+                .compute(txWorldTarget, actual, robotVelRobot);
+        MecanumKinematics.WheelVelocities<Time> wheelVels = kinematics.inverse(command);
+        MotorFeedforward feedforward = new MotorFeedforward(params.kS,
+                params.kV / params.inPerTick, params.kA / params.inPerTick);
+
+        TargetState target = new TargetState();
+        target.set(txWorldTarget);
+        controller.update(target,
+                actual.position.x, actual.position.y, actual.heading.real, actual.heading.imag,
+                robotVelRobot.linearVel.x, robotVelRobot.linearVel.y, robotVelRobot.angVel,
+                VOLTAGE);
+
+        assertEquals(feedforward.compute(wheelVels.leftFront) / VOLTAGE, controller.leftFrontPower, 1e-9);
+        assertEquals(feedforward.compute(wheelVels.leftBack) / VOLTAGE, controller.leftBackPower, 1e-9);
+        assertEquals(feedforward.compute(wheelVels.rightBack) / VOLTAGE, controller.rightBackPower, 1e-9);
+        assertEquals(feedforward.compute(wheelVels.rightFront) / VOLTAGE, controller.rightFrontPower, 1e-9);
+    }
+
+    // world-frame pose, velocity and acceleration as RoadRunner's trajectories return them
+    private static Pose2dDual<Time> target(double x, double y, double heading,
+                                           double vx, double vy, double omega,
+                                           double ax, double ay, double alpha) {
+        DualNum<Time> h = new DualNum<>(new double[] { heading, omega, alpha });
+        return new Pose2dDual<>(
+                new Vector2dDual<>(
+                        new DualNum<>(new double[] { x, vx, ax }),
+                        new DualNum<>(new double[] { y, vy, ay })),
+                new Rotation2dDual<>(h.cos(), h.sin()));
+    }
+}
@@ -0,0 +1,98 @@
+package org.firstinspires.ftc.teamcode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Feeds both encoder velocity estimators a constant-velocity ramp and a velocity step. Times
+ * and positions start far from zero, as they are late in a match, so precision loss in the
+ * running sums would show.
+ */
+public final class VelocityEstimatorTest {
+    private static final long START_NANOS = 600_000_000_000L;
+    private static final double START_POSITION = 2_000_000;
+    private static final long PERIOD_NANOS = 10_000_000L; // 100 Hz
+    private static final double VELOCITY = 2345.5; // ticks/s
+
+    private static final int WINDOW = 8;
+    private static final double ALPHA = 0.5, BETA = ALPHA * ALPHA / (2 - ALPHA);
+
+    @Test
+    public void leastSquaresIsExactOnRamp() {
+        VelocityEstimator estimator = new LeastSquaresVelocityEstimator(WINDOW);
+        assertEquals(0, estimator.update(START_NANOS, START_POSITION), 0);
+
+        // a line through any two or more samples has the line's slope, before and after the
+        // window fills
+        for (int i = 1; i < 2000; i++) {
+            assertEquals("sample " + i, VELOCITY, estimator.update(time(i), ramp(i)), 1e-6);
+        }
+    }
+
+    @Test
+    public void leastSquaresSettlesOneWindowAfterStep() {
+        VelocityEstimator estimator = new LeastSquaresVelocityEstimator(WINDOW);
+        int step = 100;
+        for (int i = 0; i <= step; i++) {
+            estimator.update(time(i), START_POSITION);
+        }
+
+        // the estimate climbs monotonically while the window straddles the step and is exact
+        // once the sample at the step is the oldest one left
+        double last = 0;
+        for (int i = step + 1; i < step + WINDOW; i++) {
+            double v = estimator.update(time(i), START_POSITION + VELOCITY * (i - step) * 0.01);
+            assertTrue("sample " + i + ": " + v, v > last && v < VELOCITY);
+            last = v;
+        }
+        for (int i = step + WINDOW; i < step + 200; i++) {
+            double v = estimator.update(time(i), START_POSITION + VELOCITY * (i - step) * 0.01);
+            assertEquals("sample " + i, VELOCITY, v, 1e-6);
+        }
+    }
+
+    @Test
+    public void alphaBetaConvergesOnRamp() {
+        VelocityEstimator estimator = new AlphaBetaVelocityEstimator(ALPHA, BETA);
+        assertEquals(0, estimator.update(START_NANOS, START_POSITION), 0);
+
+        // starting from zero velocity it has to catch up, but a ramp leaves no steady-state error
+        for (int i = 1; i < 200; i++) {
+            estimator.update(time(i), ramp(i));
+        }
+        for (int i = 200; i < 2000; i++) {
+            assertEquals("sample " + i, VELOCITY, estimator.update(time(i), ramp(i)), 1e-6);
+        }
+    }
+
+    @Test
+    public void alphaBetaLagsThenSettlesAfterStep() {
+        VelocityEstimator estimator = new AlphaBetaVelocityEstimator(ALPHA, BETA);
+        int step = 100;
+        for (int i = 0; i <= step; i++) {
+            assertEquals(0, estimator.update(time(i), START_POSITION), 0);
+        }
+
+        // the first sample after the step only moves the estimate by beta of the residual
+        double first = estimator.update(time(step + 1), START_POSITION + VELOCITY * 0.01);
+        assertEquals(BETA * VELOCITY, first, 1e-6);
+
+        for (int i = step + 2; i < step + 100; i++) {
+            estimator.update(time(i), START_POSITION + VELOCITY * (i - step) * 0.01);
+        }
+        for (int i = step + 100; i < step + 300; i++) {
+            double v = estimator.update(time(i), START_POSITION + VELOCITY * (i - step) * 0.01);
+            assertEquals("sample " + i, VELOCITY, v, 1e-6);
+        }
+    }
+
+    private static long time(int i) {
+        return START_NANOS + i * PERIOD_NANOS;
+    }
+
+    private static double ramp(int i) {
+        return START_POSITION + VELOCITY * i * PERIOD_NANOS / 1e9;
+    }
+}
@@ -0,0 +1,485 @@
+package org.firstinspires.ftc.teamcode.replay;
+
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+
+import org.firstinspires.ftc.teamcode.Localizer;
+import org.firstinspires.ftc.teamcode.MecanumDrive;
+import org.firstinspires.ftc.teamcode.ThreeDeadWheelLocalizer;
+import org.firstinspires.ftc.teamcode.TwoDeadWheelLocalizer;
+import org.firstinspires.ftc.teamcode.VelocityEstimator;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Replays the localizer inputs of a FlightRecorder log through the localizer code on a laptop,
+ * as fast as the JVM runs it. The log is streamed once: the input channel is decoded into
+ * primitive columns and everything else but the recorded PARAMS and the first and last
+ * estimated pose is dropped as it is read. Each variant (a parameter change) then runs over the
+ * same columns and is compared against the first.
+ * <p>
+ * It lives in the JVM unit-test source set so Gradle provides the classpath. Copy the log off the
+ * robot (it's under RoadRunner/logs on the Control Hub) and run it through LocalizerReplayTest:
+ * <pre>
+ *   ./gradlew :TeamCode:testDebugUnitTest --tests '*LocalizerReplayTest' \
+ *       -PreplayLog=path/to/file.log -PreplayArgs="MecanumDrive.inPerTick=0.0021 ..."
+ * </pre>
+ * The robot's PARAMS are restored from the log first and the overrides applied after that; both
+ * are put back once the replay is done.
+ */
+public final class LocalizerReplay {
+    private static final String MECANUM_INPUTS = "MECANUM_LOCALIZER_INPUTS";
+    private static final String TWO_DEAD_WHEEL_INPUTS = "TWO_DEAD_WHEEL_INPUTS";
+    private static final String THREE_DEAD_WHEEL_INPUTS = "THREE_DEAD_WHEEL_INPUTS";
+    private static final String ESTIMATED_POSE = "ESTIMATED_POSE";
+
+    private static final Map<String, Object> PARAMS_BY_CLASS = new HashMap<>();
+
+    static {
+        PARAMS_BY_CLASS.put("MecanumDrive", MecanumDrive.PARAMS);
+        PARAMS_BY_CLASS.put("TwoDeadWheelLocalizer", TwoDeadWheelLocalizer.PARAMS);
+        PARAMS_BY_CLASS.put("ThreeDeadWheelLocalizer", ThreeDeadWheelLocalizer.PARAMS);
+    }
+
+    private static final class Variant {
+        final String name;
+        final Object params;
+        final String field;
+        final Object value; // null keeps the recorded value
+
+        Variant(String name, Object params, String field, Object value) {
+            this.name = name;
+            this.params = params;
+            this.field = field;
+            this.value = value;
+        }
+    }
+
+    /**
+     * One input channel as primitive columns, indexed by sample; encoder columns are indexed by
+     * encoder first, in the order of {@link #encoders}.
+     */
+    private static final class Inputs {
+        final String channel;
+        final String[] encoders;
+        final boolean hasImu;
+        boolean hasRates;
+        int size;
+
+        long[] timestamps = new long[1024];
+        int[][] position, velocity, rawPosition, rawVelocity;
+        boolean[] imuFresh;
+        double[] yaw, pitch, roll, xRate, yRate, zRate;
+
+        Inputs(String channel) {
+            this.channel = channel;
+            if (channel.equals(MECANUM_INPUTS)) {
+                encoders = new String[] { "leftFront", "leftBack", "rightBack", "rightFront" };
+            } else if (channel.equals(TWO_DEAD_WHEEL_INPUTS)) {
+                encoders = new String[] { "par", "perp" };
+            } else {
+                encoders = new String[] { "par0", "par1", "perp" };
+            }
+            hasImu = !channel.equals(THREE_DEAD_WHEEL_INPUTS);
+
+            int n = timestamps.length;
+            position = new int[encoders.length][n];
+            velocity = new int[encoders.length][n];
+            rawPosition = new int[encoders.length][n];
+            rawVelocity = new int[encoders.length][n];
+            if (hasImu) {
+                imuFresh = new boolean[n];
+                yaw = new double[n];
+                pitch = new double[n];
+                roll = new double[n];
+                xRate = new double[n];
+                yRate = new double[n];
+                zRate = new double[n];
+            }
+        }
+
+        void add(Map<String, Object> record) {
+            if (size == timestamps.length) {
+                grow(size * 2);
+            }
+
+            timestamps[size] = (Long) record.get("timestamp");
+            for (int j = 0; j < encoders.length; j++) {
+                Map<String, Object> pair = struct(record.get(encoders[j]));
+                int p = (Integer) pair.get("position"), v = (Integer) pair.get("velocity");
+                Object rawP = pair.get("rawPosition"), rawV = pair.get("rawVelocity");
+                position[j][size] = p;
+                velocity[j][size] = v;
+                rawPosition[j][size] = rawP == null ? p : (Integer) rawP;
+                rawVelocity[j][size] = rawV == null ? v : (Integer) rawV;
+            }
+            if (hasImu) {
+                // logs from before the flag existed read the IMU every tick
+                imuFresh[size] = !Boolean.FALSE.equals(record.get("imuFresh"));
+                yaw[size] = (Double) record.get("yaw");
+                pitch[size] = (Double) record.get("pitch");
+                roll[size] = (Double) record.get("roll");
+                if (record.containsKey("zRotationRate")) {
+                    hasRates = true;
+                    xRate[size] = (Double) record.get("xRotationRate");
+                    yRate[size] = (Double) record.get("yRotationRate");
+                    zRate[size] = (Double) record.get("zRotationRate");
+                }
+            }
+            size++;
+        }
+
+        private void grow(int n) {
+            timestamps = Arrays.copyOf(timestamps, n);
+            for (int j = 0; j < encoders.length; j++) {
+                position[j] = Arrays.copyOf(position[j], n);
+                velocity[j] = Arrays.copyOf(velocity[j], n);
+                rawPosition[j] = Arrays.copyOf(rawPosition[j], n);
+                rawVelocity[j] = Arrays.copyOf(rawVelocity[j], n);
+            }
+            if (hasImu) {
+                imuFresh = Arrays.copyOf(imuFresh, n);
+                yaw = Arrays.copyOf(yaw, n);
+                pitch = Arrays.copyOf(pitch, n);
+                roll = Arrays.copyOf(roll, n);
+                xRate = Arrays.copyOf(xRate, n);
+                yRate = Arrays.copyOf(yRate, n);
+                zRate = Arrays.copyOf(zRate, n);
+            }
+        }
+
+        double span() {
+            return (timestamps[size - 1] - timestamps[0]) / 1e9;
+        }
+    }
+
+    // what the replay keeps of a log
+    private static final class Log {
+        final Set<String> channels = new TreeSet<>();
+        final Map<String, Map<String, Object>> params = new HashMap<>(); // last of each *_PARAMS
+        final Map<String, Inputs> inputs = new HashMap<>();
+        Map<String, Object> firstPose, lastPose;
+    }
+
+    private static final class Result {
+        final double[] x, y, heading, vx, vy, omega;
+        long nanos;
+
+        Result(int n) {
+            x = new double[n];
+            y = new double[n];
+            heading = new double[n];
+            vx = new double[n];
+            vy = new double[n];
+            omega = new double[n];
+        }
+    }
+
+    private LocalizerReplay() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: LocalizerReplay <file.log> [Class.field=value ...]");
+            System.exit(2);
+        }
+
+        replay(args[0], Arrays.asList(args).subList(1, args.length), System.out);
+    }
+
+    /**
+     * Replays the log with the given Class.field=value overrides and prints one line per variant.
+     *
+     * @return the final pose of the as-recorded run
+     */
+    public static Pose2d replay(String path, List<String> overrides, PrintStream out) throws Exception {
+        Map<String, Map<String, Object>> saved = new HashMap<>();
+        for (Map.Entry<String, Object> e : PARAMS_BY_CLASS.entrySet()) {
+            saved.put(e.getKey(), snapshot(e.getValue()));
+        }
+        try {
+            return replayWithParams(path, overrides, out);
+        } finally {
+            for (Map.Entry<String, Object> e : PARAMS_BY_CLASS.entrySet()) {
+                restore(e.getValue(), saved.get(e.getKey()));
+            }
+        }
+    }
+
+    private static Pose2d replayWithParams(String path, List<String> overrides, PrintStream out) throws Exception {
+        Log log = load(path);
+
+        for (Map.Entry<String, Object> e : PARAMS_BY_CLASS.entrySet()) {
+            Map<String, Object> recorded = log.params.get(paramsChannel(e.getKey()));
+            if (recorded != null) {
+                applyRecorded(e.getValue(), recorded);
+            }
+        }
+        for (String override : overrides) {
+            applyOverride(override);
+        }
+
+        Inputs inputs;
+        List<Variant> variants = new ArrayList<>();
+        if (log.inputs.containsKey(MECANUM_INPUTS)) {
+            inputs = log.inputs.get(MECANUM_INPUTS);
+            for (double period : new double[] { 10, 25, 50 }) {
+                variants.add(new Variant("imu every " + period + " ms", MecanumDrive.PARAMS, "imuReadPeriodMs", period));
+            }
+        } else if (log.inputs.containsKey(TWO_DEAD_WHEEL_INPUTS) || log.inputs.containsKey(THREE_DEAD_WHEEL_INPUTS)) {
+            inputs = log.inputs.containsKey(TWO_DEAD_WHEEL_INPUTS)
+                    ? log.inputs.get(TWO_DEAD_WHEEL_INPUTS) : log.inputs.get(THREE_DEAD_WHEEL_INPUTS);
+            Object params = inputs.channel.equals(TWO_DEAD_WHEEL_INPUTS) ? TwoDeadWheelLocalizer.PARAMS : ThreeDeadWheelLocalizer.PARAMS;
+            for (VelocityEstimator.Type type : VelocityEstimator.Type.values()) {
+                variants.add(new Variant("velocity " + type, params, "velocityEstimator", type));
+            }
+        } else {
+            throw new IllegalArgumentException("no localizer inputs in " + path + "; channels: " + log.channels);
+        }
+        variants.add(0, new Variant("as recorded", null, null, null));
+
+        Pose2d start = new Pose2d(0, 0, 0);
+        if (log.firstPose != null) {
+            Map<String, Object> first = log.firstPose;
+            start = new Pose2d((Double) first.get("x"), (Double) first.get("y"), (Double) first.get("heading"));
+        }
+
+        double span = inputs.span();
+        out.printf("%s: %d samples over %.1f s, start %s%n", inputs.channel, inputs.size, span, start);
+        if (log.lastPose != null) {
+            Map<String, Object> last = log.lastPose;
+            out.printf("recorded final pose (%.2f, %.2f, %.1f deg)%n",
+                    last.get("x"), last.get("y"), Math.toDegrees((Double) last.get("heading")));
+        }
+
+        Result baseline = null;
+        for (Variant v : variants) {
+            Object previous = null;
+            if (v.params != null) {
+                previous = get(v.params, v.field);
+                set(v.params, v.field, v.value);
+            }
+            Result r;
+            try {
+                r = run(inputs, start);
+            } finally {
+                if (v.params != null) {
+                    set(v.params, v.field, previous);
+                }
+            }
+
+            if (baseline == null) {
+                baseline = r;
+            }
+            report(out, v.name, r, baseline, span);
+        }
+
+        int last = baseline.x.length - 1;
+        return new Pose2d(baseline.x[last], baseline.y[last], baseline.heading[last]);
+    }
+
+    private static Result run(Inputs in, Pose2d start) {
+        final long[] now = new long[1];
+        ReplayImu imu = new ReplayImu();
+        ReplayEncoder[] encoders = encoders(in.encoders.length);
+        Localizer localizer;
+
+        if (in.channel.equals(MECANUM_INPUTS)) {
+            MecanumDrive.DriveLocalizer dl = new MecanumDrive.DriveLocalizer(
+                    encoders[0], encoders[1], encoders[2], encoders[3], imu, MecanumDrive.newKinematics(), start);
+            dl.setClock(() -> now[0]);
+            localizer = dl;
+        } else if (in.channel.equals(TWO_DEAD_WHEEL_INPUTS)) {
+            TwoDeadWheelLocalizer dl = new TwoDeadWheelLocalizer(
+                    encoders[0], encoders[1], imu, MecanumDrive.PARAMS.inPerTick, start);
+            dl.setClock(() -> now[0]);
+            localizer = dl;
+        } else {
+            ThreeDeadWheelLocalizer dl = new ThreeDeadWheelLocalizer(
+                    encoders[0], encoders[1], encoders[2], MecanumDrive.PARAMS.inPerTick, start);
+            dl.setClock(() -> now[0]);
+            localizer = dl;
+        }
+
+        Result r = new Result(in.size);
+        long t = System.nanoTime();
+        for (int i = 0; i < in.size; i++) {
+            for (int j = 0; j < encoders.length; j++) {
+                encoders[j].set(in.position[j][i], in.velocity[j][i], in.rawPosition[j][i], in.rawVelocity[j][i]);
+            }
+            // stale samples repeat an older reading; the IMU keeps returning the newest fresh one
+            if (in.hasImu && in.imuFresh[i]) {
+                imu.set(in.timestamps[i], in.yaw[i], in.pitch[i], in.roll[i]);
+                if (in.hasRates) {
+                    imu.setRates(in.xRate[i], in.yRate[i], in.zRate[i]);
+                }
+            }
+            now[0] = in.timestamps[i];
+
+            PoseVelocity2d vel = localizer.update();
+            Pose2d pose = localizer.getPose();
+            r.x[i] = pose.position.x;
+            r.y[i] = pose.position.y;
+            r.heading[i] = pose.heading.toDouble();
+            r.vx[i] = vel.linearVel.x;
+            r.vy[i] = vel.linearVel.y;
+            r.omega[i] = vel.angVel;
+        }
+        r.nanos = System.nanoTime() - t;
+        return r;
+    }
+
+    private static void report(PrintStream out, String name, Result r, Result baseline, double span) {
+        int n = r.x.length, last = n - 1;
+        double maxDeviation = 0, velSq = 0;
+        for (int i = 0; i < n; i++) {
+            maxDeviation = Math.max(maxDeviation, Math.hypot(r.x[i] - baseline.x[i], r.y[i] - baseline.y[i]));
+            double dvx = r.vx[i] - baseline.vx[i], dvy = r.vy[i] - baseline.vy[i];
+            velSq += dvx * dvx + dvy * dvy;
+        }
+        double seconds = r.nanos / 1e9;
+        out.printf("%-24s final (%.2f, %.2f, %.1f deg)  max dev %.3f in  rms vel diff %.3f in/s  "
+                        + "%.1f ms (%.0fx real time)%n",
+                name, r.x[last], r.y[last], Math.toDegrees(r.heading[last]), maxDeviation,
+                Math.sqrt(velSq / n), seconds * 1e3, span / seconds);
+    }
+
+    private static Log load(String path) throws IOException {
+        Log log = new Log();
+        try (LogReader reader = new LogReader(path)) {
+            LogReader.Entry e;
+            while ((e = reader.next()) != null) {
+                log.channels.add(e.channel);
+                if (!(e.value instanceof Map)) {
+                    continue;
+                }
+
+                if (e.channel.equals(MECANUM_INPUTS) || e.channel.equals(TWO_DEAD_WHEEL_INPUTS)
+                        || e.channel.equals(THREE_DEAD_WHEEL_INPUTS)) {
+                    Inputs inputs = log.inputs.get(e.channel);
+                    if (inputs == null) {
+                        inputs = new Inputs(e.channel);
+                        log.inputs.put(e.channel, inputs);
+                    }
+                    inputs.add(e.struct());
+                } else if (e.channel.endsWith("_PARAMS")) {
+                    log.params.put(e.channel, e.struct());
+                } else if (e.channel.equals(ESTIMATED_POSE)) {
+                    if (log.firstPose == null) {
+                        log.firstPose = e.struct();
+                    }
+                    log.lastPose = e.struct();
+                }
+            }
+        }
+        return log;
+    }
+
+    private static ReplayEncoder[] encoders(int n) {
+        ReplayEncoder[] encoders = new ReplayEncoder[n];
+        for (int i = 0; i < n; i++) {
+            encoders[i] = new ReplayEncoder();
+        }
+        return encoders;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> struct(Object o) {
+        return (Map<String, Object>) o;
+    }
+
+    // MecanumDrive -> MECANUM_PARAMS, TwoDeadWheelLocalizer -> TWO_DEAD_WHEEL_PARAMS, ...
+    private static String paramsChannel(String className) {
+        String base = className.endsWith("Localizer")
+                ? className.substring(0, className.length() - "Localizer".length()) : className;
+        if (base.equals("MecanumDrive")) {
+            base = "Mecanum";
+        }
+        return base.replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase() + "_PARAMS";
+    }
+
+    /**
+     * Copies the numeric, boolean and enum fields of a recorded Params struct onto params.
+     */
+    private static void applyRecorded(Object params, Map<String, Object> recorded) throws IllegalAccessException {
+        for (Field f : params.getClass().getFields()) {
+            if (Modifier.isStatic(f.getModifiers()) || !recorded.containsKey(f.getName())) {
+                continue;
+            }
+            Object value = recorded.get(f.getName());
+            if (value instanceof String && f.getType().isEnum()) {
+                f.set(params, enumValue(f.getType(), (String) value));
+            } else if (value instanceof Number || value instanceof Boolean) {
+                f.set(params, value);
+            }
+        }
+    }
+
+    private static void applyOverride(String arg) throws ReflectiveOperationException {
+        int dot = arg.indexOf('.'), eq = arg.indexOf('=');
+        if (dot < 0 || eq < dot) {
+            throw new IllegalArgumentException("expected Class.field=value, got " + arg);
+        }
+        Object params = PARAMS_BY_CLASS.get(arg.substring(0, dot));
+        if (params == null) {
+            throw new IllegalArgumentException("unknown class in " + arg + "; one of " + PARAMS_BY_CLASS.keySet());
+        }
+        String name = arg.substring(dot + 1, eq), text = arg.substring(eq + 1);
+        Class<?> type = params.getClass().getField(name).getType();
+        Object value;
+        if (type == double.class) {
+            value = Double.parseDouble(text);
+        } else if (type == int.class) {
+            value = Integer.parseInt(text);
+        } else if (type == long.class) {
+            value = Long.parseLong(text);
+        } else if (type == boolean.class) {
+            value = Boolean.parseBoolean(text);
+        } else if (type.isEnum()) {
+            value = enumValue(type, text);
+        } else {
+            throw new IllegalArgumentException("can't override " + arg + " of type " + type.getSimpleName()
+                    + "; supported: " + Arrays.asList("double", "int", "long", "boolean", "enum"));
+        }
+        set(params, name, value);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object enumValue(Class<?> type, String name) {
+        return Enum.valueOf((Class) type, name);
+    }
+
+    private static Map<String, Object> snapshot(Object params) throws IllegalAccessException {
+        Map<String, Object> values = new HashMap<>();
+        for (Field f : params.getClass().getFields()) {
+            if (!Modifier.isStatic(f.getModifiers())) {
+                values.put(f.getName(), f.get(params));
+            }
+        }
+        return values;
+    }
+
+    private static void restore(Object params, Map<String, Object> values) throws ReflectiveOperationException {
+        for (Map.Entry<String, Object> e : values.entrySet()) {
+            set(params, e.getKey(), e.getValue());
+        }
+    }
+
+    private static Object get(Object params, String field) throws ReflectiveOperationException {
+        return params.getClass().getField(field).get(params);
+    }
+
+    private static void set(Object params, String field, Object value) throws ReflectiveOperationException {
+        params.getClass().getField(field).set(params, value);
+    }
+}
@@ -0,0 +1,128 @@
+package org.firstinspires.ftc.teamcode.replay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeFalse;
+
+import com.acmerobotics.roadrunner.Pose2d;
+
+import org.firstinspires.ftc.teamcode.MecanumDrive;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs LocalizerReplay. {@link #replaysRobotLog()} replays a log copied off the robot when one
+ * is passed with -PreplayLog (see LocalizerReplay); the synthetic log below always runs and
+ * checks the reader, the replay stand-ins and the localizer end to end.
+ */
+public final class LocalizerReplayTest {
+    private static final int SCHEMA_STRUCT = 0, SCHEMA_INT = 1, SCHEMA_LONG = 2, SCHEMA_DOUBLE = 3,
+            SCHEMA_BOOLEAN = 5;
+
+    @Test
+    public void replaysRobotLog() throws Exception {
+        String path = System.getProperty("replay.log", "");
+        assumeFalse("no -PreplayLog given", path.isEmpty());
+
+        String args = System.getProperty("replay.args", "").trim();
+        List<String> overrides = args.isEmpty()
+                ? Collections.<String>emptyList() : Arrays.asList(args.split("\\s+"));
+        LocalizerReplay.replay(path, overrides, System.out);
+    }
+
+    @Test
+    public void syntheticMecanumLogEndsWhereItDrove() throws Exception {
+        double inPerTick = MecanumDrive.PARAMS.inPerTick;
+
+        // 50 ticks 10 ms apart, every wheel +100 ticks per tick, heading held at 0; the IMU is
+        // only fresh every other tick, like a decimated recording
+        File file = File.createTempFile("replay", ".log");
+        file.deleteOnExit();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeByte('R');
+            out.writeByte('R');
+            out.writeShort(1);
+
+            channel(out, "MECANUM_PARAMS");
+            struct(out, "inPerTick", SCHEMA_DOUBLE, "lateralInPerTick", SCHEMA_DOUBLE,
+                    "trackWidthTicks", SCHEMA_DOUBLE, "imuReadPeriodMs", SCHEMA_DOUBLE);
+
+            channel(out, "MECANUM_LOCALIZER_INPUTS");
+            out.writeInt(SCHEMA_STRUCT);
+            out.writeInt(9);
+            string(out, "timestamp");
+            out.writeInt(SCHEMA_LONG);
+            for (String wheel : new String[] { "leftFront", "leftBack", "rightBack", "rightFront" }) {
+                string(out, wheel);
+                struct(out, "position", SCHEMA_INT, "velocity", SCHEMA_INT,
+                        "rawPosition", SCHEMA_INT, "rawVelocity", SCHEMA_INT);
+            }
+            for (String angle : new String[] { "yaw", "pitch", "roll" }) {
+                string(out, angle);
+                out.writeInt(SCHEMA_DOUBLE);
+            }
+            string(out, "imuFresh");
+            out.writeInt(SCHEMA_BOOLEAN);
+
+            out.writeInt(1);
+            out.writeInt(0);
+            out.writeDouble(0.01);
+            out.writeDouble(0.01);
+            out.writeDouble(1000);
+            out.writeDouble(20);
+
+            for (int i = 0; i < 50; i++) {
+                out.writeInt(1);
+                out.writeInt(1);
+                out.writeLong(1_000_000_000L + i * 10_000_000L);
+                for (int wheel = 0; wheel < 4; wheel++) {
+                    out.writeInt(100 * i);
+                    out.writeInt(10_000);
+                    out.writeInt(100 * i);
+                    out.writeInt(10_000);
+                }
+                out.writeDouble(0);
+                out.writeDouble(0);
+                out.writeDouble(0);
+                out.writeByte(i % 2 == 0 ? 1 : 0);
+            }
+        }
+
+        Pose2d end = LocalizerReplay.replay(file.getPath(), Collections.<String>emptyList(), System.out);
+
+        // the first tick only initializes, the other 49 move 1 in each
+        assertEquals(49, end.position.x, 1e-9);
+        assertEquals(0, end.position.y, 1e-9);
+        assertEquals(0, end.heading.toDouble(), 1e-9);
+        // the log's PARAMS are put back afterwards
+        assertEquals(inPerTick, MecanumDrive.PARAMS.inPerTick, 0);
+    }
+
+    private static void channel(DataOutputStream out, String name) throws IOException {
+        out.writeInt(0);
+        string(out, name);
+    }
+
+    // a struct schema of primitive fields, given as name, tag pairs
+    private static void struct(DataOutputStream out, Object... fields) throws IOException {
+        out.writeInt(SCHEMA_STRUCT);
+        out.writeInt(fields.length / 2);
+        for (int i = 0; i < fields.length; i += 2) {
+            string(out, (String) fields[i]);
+            out.writeInt((Integer) fields[i + 1]);
+        }
+    }
+
+    private static void string(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,201 @@
+package org.firstinspires.ftc.teamcode.replay;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the .log files FlightRecorder writes (RoadRunner's schema-tagged binary format) without
+ * any of the classes that wrote them: every message is decoded from the schema stored in the
+ * file, structs as ordered maps from field name to value, enums as their constant names and
+ * arrays as lists. Numbers are big-endian; strings are length-prefixed UTF-8.
+ */
+public final class LogReader implements Closeable {
+    private static final int ENTRY_CHANNEL = 0;
+    private static final int ENTRY_MESSAGE = 1;
+
+    public static final class Entry {
+        public final String channel;
+        public final Object value;
+
+        Entry(String channel, Object value) {
+            this.channel = channel;
+            this.value = value;
+        }
+
+        @SuppressWarnings("unchecked")
+        public Map<String, Object> struct() {
+            return (Map<String, Object>) value;
+        }
+    }
+
+    private abstract static class Schema {
+        abstract Object decode(DataInputStream in) throws IOException;
+    }
+
+    private final DataInputStream in;
+    private final int version;
+    private final List<String> channels = new ArrayList<>();
+    private final List<Schema> schemas = new ArrayList<>();
+
+    public LogReader(InputStream stream) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+        if (in.readByte() != 'R' || in.readByte() != 'R') {
+            throw new IOException("not a RoadRunner log file");
+        }
+        version = in.readShort();
+    }
+
+    public LogReader(String path) throws IOException {
+        this(new FileInputStream(path));
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the next message, or null at the end of the file. Channel definitions in between
+     * are read along the way.
+     */
+    public Entry next() throws IOException {
+        while (true) {
+            int type;
+            try {
+                type = in.readInt();
+            } catch (EOFException e) {
+                // the recorder stops wherever the op mode did; a partial entry also ends the log
+                return null;
+            }
+
+            try {
+                if (type == ENTRY_CHANNEL) {
+                    channels.add(readString(in));
+                    schemas.add(readSchema(in));
+                } else if (type == ENTRY_MESSAGE) {
+                    int index = in.readInt();
+                    if (index < 0 || index >= channels.size()) {
+                        throw new IOException("message on undefined channel " + index);
+                    }
+                    return new Entry(channels.get(index), schemas.get(index).decode(in));
+                } else {
+                    throw new IOException("unknown entry type " + type);
+                }
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Schema readSchema(DataInputStream in) throws IOException {
+        int tag = in.readInt();
+        switch (tag) {
+            case 0: {
+                int n = in.readInt();
+                final String[] names = new String[n];
+                final Schema[] fields = new Schema[n];
+                for (int i = 0; i < n; i++) {
+                    names[i] = readString(in);
+                    fields[i] = readSchema(in);
+                }
+                return new Schema() {
+                    @Override
+                    Object decode(DataInputStream in) throws IOException {
+                        Map<String, Object> struct = new LinkedHashMap<>();
+                        for (int i = 0; i < names.length; i++) {
+                            struct.put(names[i], fields[i].decode(in));
+                        }
+                        return struct;
+                    }
+                };
+            }
+            case 1:
+                return new Schema() {
+                    @Override
+                    Object decode(DataInputStream in) throws IOException {
+                        return in.readInt();
+                    }
+                };
+            case 2:
+                return new Schema() {
+                    @Override
+                    Object decode(DataInputStream in) throws IOException {
+                        return in.readLong();
+                    }
+                };
+            case 3:
+                return new Schema() {
+                    @Override
+                    Object decode(DataInputStream in) throws IOException {
+                        return in.readDouble();
+                    }
+                };
+            case 4:
+                return new Schema() {
+                    @Override
+                    Object decode(DataInputStream in) throws IOException {
+                        return readString(in);
+                    }
+                };
+            case 5:
+                return new Schema() {
+                    @Override
+                    Object decode(DataInputStream in) throws IOException {
+                        return in.readByte() != 0;
+                    }
+                };
+            case 6: {
+                final String[] constants = new String[in.readInt()];
+                for (int i = 0; i < constants.length; i++) {
+                    constants[i] = readString(in);
+                }
+                return new Schema() {
+                    @Override
+                    Object decode(DataInputStream in) throws IOException {
+                        int ordinal = in.readInt();
+                        if (ordinal < 0 || ordinal >= constants.length) {
+                            throw new IOException("enum ordinal " + ordinal + " out of range");
+                        }
+                        return constants[ordinal];
+                    }
+                };
+            }
+            case 7: {
+                final Schema element = readSchema(in);
+                return new Schema() {
+                    @Override
+                    Object decode(DataInputStream in) throws IOException {
+                        int n = in.readInt();
+                        List<Object> list = new ArrayList<>(n);
+                        for (int i = 0; i < n; i++) {
+                            list.add(element.decode(in));
+                        }
+                        return list;
+                    }
+                };
+            }
+            default:
+                throw new IOException("unknown schema tag " + tag);
+        }
+    }
+}
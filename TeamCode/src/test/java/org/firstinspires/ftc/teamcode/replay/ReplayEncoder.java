@@ -0,0 +1,57 @@
+package org.firstinspires.ftc.teamcode.replay;
+
+import com.acmerobotics.roadrunner.ftc.Encoder;
+import com.acmerobotics.roadrunner.ftc.PositionVelocityPair;
+import com.qualcomm.robotcore.hardware.DcMotorController;
+import com.qualcomm.robotcore.hardware.DcMotorSimple;
+
+import java.util.Map;
+
+/**
+ * Encoder stand-in that returns whatever recorded PositionVelocityPair was last set.
+ * The log holds the pairs as the localizer saw them (after direction and overflow correction),
+ * so the direction set here is kept but not applied again.
+ */
+public final class ReplayEncoder implements Encoder {
+    private PositionVelocityPair current = new PositionVelocityPair(0, 0, 0, 0);
+    private DcMotorSimple.Direction direction = DcMotorSimple.Direction.FORWARD;
+
+    /**
+     * Sets the next reading from a decoded PositionVelocityPair struct.
+     */
+    public void set(Map<String, Object> pair) {
+        int position = (Integer) pair.get("position");
+        int velocity = (Integer) pair.get("velocity");
+        Object rawPosition = pair.get("rawPosition");
+        Object rawVelocity = pair.get("rawVelocity");
+        set(position, velocity,
+                rawPosition == null ? position : (Integer) rawPosition,
+                rawVelocity == null ? velocity : (Integer) rawVelocity);
+    }
+
+    public void set(int position, int velocity, int rawPosition, int rawVelocity) {
+        current = new PositionVelocityPair(position, velocity, rawPosition, rawVelocity);
+    }
+
+    @Override
+    public PositionVelocityPair getPositionAndVelocity() {
+        return current;
+    }
+
+    /**
+     * Returns null: a replayed encoder isn't attached to any hub. The localizers never ask.
+     */
+    public DcMotorController getController() {
+        return null;
+    }
+
+    @Override
+    public DcMotorSimple.Direction getDirection() {
+        return direction;
+    }
+
+    @Override
+    public void setDirection(DcMotorSimple.Direction direction) {
+        this.direction = direction;
+    }
+}
@@ -0,0 +1,131 @@
+package org.firstinspires.ftc.teamcode.replay;
+
+import com.qualcomm.robotcore.hardware.IMU;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.AngularVelocity;
+import org.firstinspires.ftc.robotcore.external.navigation.AxesOrder;
+import org.firstinspires.ftc.robotcore.external.navigation.AxesReference;
+import org.firstinspires.ftc.robotcore.external.navigation.Orientation;
+import org.firstinspires.ftc.robotcore.external.navigation.Quaternion;
+import org.firstinspires.ftc.robotcore.external.navigation.YawPitchRollAngles;
+
+import java.util.Map;
+
+/**
+ * IMU stand-in that returns the yaw, pitch, roll and rotation rates last set from a log message.
+ * The recorded angles and rates are in radians. Messages marked {@code imuFresh = false} repeat
+ * an older sample and are ignored, so a read returns the newest sample the robot actually took.
+ * Orientation and quaternion reads are derived from the same angles (yaw-pitch-roll is intrinsic
+ * ZXY in the SDK), and resetYaw() re-zeroes yaw like the hardware does.
+ */
+public final class ReplayImu implements IMU {
+    private double yaw, pitch, roll;
+    private double yawOffset;
+    private double xRate, yRate, zRate;
+    private long timestamp;
+
+    /**
+     * Sets the next reading from a decoded inputs message; rates are taken when present.
+     */
+    public void set(Map<String, Object> message) {
+        // logs from before the flag existed read the IMU every tick
+        if (Boolean.FALSE.equals(message.get("imuFresh"))) {
+            return;
+        }
+
+        set((Long) message.get("timestamp"),
+                (Double) message.get("yaw"), (Double) message.get("pitch"), (Double) message.get("roll"));
+        if (message.containsKey("zRotationRate")) {
+            setRates((Double) message.get("xRotationRate"), (Double) message.get("yRotationRate"),
+                    (Double) message.get("zRotationRate"));
+        }
+    }
+
+    /**
+     * Sets the next fresh reading; angles in radians.
+     */
+    public void set(long timestamp, double yaw, double pitch, double roll) {
+        this.timestamp = timestamp;
+        this.yaw = yaw;
+        this.pitch = pitch;
+        this.roll = roll;
+    }
+
+    /**
+     * Sets the rotation rates (rad/s) that go with the last reading.
+     */
+    public void setRates(double xRate, double yRate, double zRate) {
+        this.xRate = xRate;
+        this.yRate = yRate;
+        this.zRate = zRate;
+    }
+
+    @Override
+    public YawPitchRollAngles getRobotYawPitchRollAngles() {
+        return new YawPitchRollAngles(AngleUnit.RADIANS,
+                AngleUnit.normalizeRadians(yaw - yawOffset), pitch, roll, timestamp);
+    }
+
+    @Override
+    public AngularVelocity getRobotAngularVelocity(AngleUnit angleUnit) {
+        double scale = angleUnit == AngleUnit.DEGREES ? Math.toDegrees(1) : 1;
+        return new AngularVelocity(angleUnit.getUnnormalized(),
+                (float) (xRate * scale), (float) (yRate * scale), (float) (zRate * scale), timestamp);
+    }
+
+    @Override
+    public Orientation getRobotOrientation(AxesReference reference, AxesOrder order, AngleUnit angleUnit) {
+        return orientation().toAxesReference(reference).toAxesOrder(order).toAngleUnit(angleUnit);
+    }
+
+    @Override
+    public Quaternion getRobotOrientationAsQuaternion() {
+        return Quaternion.fromMatrix(orientation().getRotationMatrix(), timestamp);
+    }
+
+    private Orientation orientation() {
+        YawPitchRollAngles angles = getRobotYawPitchRollAngles();
+        return new Orientation(AxesReference.INTRINSIC, AxesOrder.ZXY, AngleUnit.RADIANS,
+                (float) angles.getYaw(AngleUnit.RADIANS), (float) angles.getPitch(AngleUnit.RADIANS),
+                (float) angles.getRoll(AngleUnit.RADIANS), timestamp);
+    }
+
+    @Override
+    public boolean initialize(Parameters parameters) {
+        return true;
+    }
+
+    @Override
+    public void resetYaw() {
+        yawOffset = yaw;
+    }
+
+    @Override
+    public Manufacturer getManufacturer() {
+        return Manufacturer.Other;
+    }
+
+    @Override
+    public String getDeviceName() {
+        return "Replay IMU";
+    }
+
+    @Override
+    public String getConnectionInfo() {
+        return "log";
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
+    @Override
+    public void resetDeviceConfigurationForOpMode() {
+    }
+
+    @Override
+    public void close() {
+    }
+}